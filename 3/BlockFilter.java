@@ -0,0 +1,75 @@
+package cola;
+
+import java.util.Arrays;
+
+/**
+ * A blocked bloom filter over the elements of one COLABlock.
+ * All bits of an element lie in the same 512 bit block (one cache line), so a lookup costs a single cache miss.
+ * The filter relies on hashCode being consistent with compareTo, as it is for Integer, Long or String, so COLAImpl
+ * only uses it if enabled.
+ */
+final class BlockFilter {
+
+    static final int BITS_PER_ELEMENT = 10;
+    static final int HASHES = 6;
+
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_LONGS = BLOCK_BITS / Long.SIZE;
+
+    private final long[] bits;
+    private final int blocks;
+
+    BlockFilter(int elements) {
+        blocks = (int) Math.max(1, ((long) elements * BITS_PER_ELEMENT + BLOCK_BITS - 1) / BLOCK_BITS);
+        bits = new long[blocks * BLOCK_LONGS];
+    }
+
+    /**
+     * Returns the hash of the element used by all filters, so it only has to be computed once per lookup.
+     */
+    static long hash(Object element) {
+        return mix(element.hashCode());
+    }
+
+    // The finalizer of MurmurHash3
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+    }
+
+    void clear() {
+        Arrays.fill(bits, 0);
+    }
+
+    void add(long hash) {
+        int block = block(hash);
+        long bitHash = mix(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (bitHash >>> (9 * i)) & (BLOCK_BITS - 1);
+            bits[block + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns false if the element with the given hash was definitely not added; true if it may have been added.
+     */
+    boolean mayContain(long hash) {
+        int block = block(hash);
+        long bitHash = mix(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (bitHash >>> (9 * i)) & (BLOCK_BITS - 1);
+            if ((bits[block + (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+}
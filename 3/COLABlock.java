@@ -2,12 +2,98 @@ package cola;
 
 import java.util.Arrays;
 
+/**
+ * One level of a COLA. All levels share one contiguous array; level k occupies the 2^k slots starting at offset
+ * 2^k - 1 and is either full or empty. Besides its elements, every level (even an empty one) holds lookahead pointers
+ * into the next level. All buffers of a level are reused, so merging into a level does not allocate.
+ */
 public class COLABlock<E extends Comparable<E>> {
 
-    private E[] elements;
+    /**
+     * Every LOOKAHEAD_STRIDE-th entry of the next larger block is copied into this block as a lookahead pointer.
+     */
+    static final int LOOKAHEAD_STRIDE = 8;
+
+    private E[] storage;
+    private final int offset;
+    private final int size;
+    private boolean full = false;
+
+    // Fractional cascading: the real elements merged with the lookahead pointers into the next block.
+    // down[i] is the index in next.cascade a lookahead entry points to, or -1 for a real element.
+    // left[i] / right[i] are the down pointers of the nearest lookahead entry at or before / at or after i.
+    // Without lookahead pointers, the cascade is the block's own part of the storage and left/right are unused.
+    private E[] cascade;
+    private int cascadeOffset;
+    private int cascadeLength;
+    private E[] buffer;
+    private int[] down;
+    private int[] left;
+    private int[] right;
+    private int nextLength;
+
+    // Membership filter (if enabled) and fence keys of the real elements; rebuilt after a merge
+    private final boolean useFilter;
+    private BlockFilter filter;
+    private boolean filterValid = false;
+    private E min;
+    private E max;
+
+    /**
+     * Blocks with at least this many elements may also keep their elements in Eytzinger order for searching.
+     */
+    static final int EYTZINGER_THRESHOLD = 1 << 16;
+
+    private final boolean useEytzinger;
+    private EytzingerLayout<E> eytzinger;
 
-    public COLABlock(int size) {
-        elements = (E[]) new Comparable[size];
+    /**
+     * Creates the (empty) block of the given level.
+     *
+     * @param storage The array shared by all levels
+     * @param level   The level, i.e. the block holds 2^level elements starting at offset 2^level - 1
+     */
+    public COLABlock(E[] storage, int level) {
+        this(storage, level, false);
+    }
+
+    /**
+     * Creates the (empty) block of the given level.
+     *
+     * @param storage      The array shared by all levels
+     * @param level        The level, i.e. the block holds 2^level elements starting at offset 2^level - 1
+     * @param useEytzinger Whether a block of at least EYTZINGER_THRESHOLD elements keeps an Eytzinger layout
+     */
+    public COLABlock(E[] storage, int level, boolean useEytzinger) {
+        this(storage, level, useEytzinger, false);
+    }
+
+    /**
+     * Creates the (empty) block of the given level.
+     *
+     * @param storage      The array shared by all levels
+     * @param level        The level, i.e. the block holds 2^level elements starting at offset 2^level - 1
+     * @param useEytzinger Whether a block of at least EYTZINGER_THRESHOLD elements keeps an Eytzinger layout
+     * @param useFilter    Whether the block keeps a membership filter; requires hashCode consistent with compareTo
+     */
+    public COLABlock(E[] storage, int level, boolean useEytzinger, boolean useFilter) {
+        this.storage = storage;
+        this.useFilter = useFilter;
+        this.offset = (1 << level) - 1;
+        this.size = 1 << level;
+        this.useEytzinger = useEytzinger && size >= EYTZINGER_THRESHOLD;
+    }
+
+    /**
+     * Replaces the shared array after it has grown. The offsets of the levels do not change, so a cascade without
+     * lookahead pointers only has to switch to the new array.
+     *
+     * @param storage The array shared by all levels
+     */
+    void setStorage(E[] storage) {
+        if (cascade == this.storage)
+            cascade = storage;
+        this.storage = storage;
     }
 
     /**
@@ -17,10 +103,79 @@ public class COLABlock<E extends Comparable<E>> {
      * @return The element in the data structure; null if non-existent.
      */
     public E search(E element) {
-        int pos = Arrays.binarySearch(elements, element);
+        if (!full)
+            return null;
+        if (eytzinger != null)
+            return eytzinger.search(element);
+        int pos = Arrays.binarySearch(storage, offset, offset + size, element);
         if (pos < 0)
             return null;
-        return elements[pos];
+        return storage[pos];
+    }
+
+    /**
+     * Returns the index of the first element in array[from, to) that is not smaller than the given element.
+     *
+     * @param array   The sorted array
+     * @param from    The first index (inclusive)
+     * @param to      The last index (exclusive)
+     * @param element The element
+     * @return The index; to if all elements are smaller.
+     */
+    public static <E extends Comparable<E>> int lowerBound(E[] array, int from, int to, E element) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (array[mid].compareTo(element) < 0)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the index of the first element in array[from, to) that is not smaller than the given element, like
+     * lowerBound, but probes from, from + 1, from + 3, from + 7, ... first. Finding an index d positions after from
+     * takes O(log d) comparisons.
+     *
+     * @param array   The sorted array
+     * @param from    The first index (inclusive)
+     * @param to      The last index (exclusive)
+     * @param element The element
+     * @return The index; to if all elements are smaller.
+     */
+    public static <E extends Comparable<E>> int gallop(E[] array, int from, int to, E element) {
+        int hi = from;
+        int step = 1;
+        while (hi < to && array[hi].compareTo(element) < 0) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        return lowerBound(array, from, Math.min(hi, to), element);
+    }
+
+    /**
+     * Searches the sorted probes in this block in a single pass. Every probe the membership filter (if any) lets
+     * through is searched by galloping from the position of the previous one, so m probes take O(m log(size / m))
+     * comparisons.
+     *
+     * @param probes The elements to search for in ascending order
+     * @param hashes The hashes of the probes, see BlockFilter.hash; ignored if the block has no filter
+     * @param found  Where found[j] is still null and this block contains probes[j], it is set to that element
+     */
+    public void searchAll(E[] probes, long[] hashes, E[] found) {
+        if (!full)
+            return;
+        int pos = offset;
+        int end = offset + size;
+        for (int j = 0; j < probes.length && pos < end; j++) {
+            if (found[j] != null || useFilter && !filter.mayContain(hashes[j]))
+                continue;
+            pos = gallop(storage, pos, end, probes[j]);
+            if (pos < end && storage[pos].compareTo(probes[j]) == 0)
+                found[j] = storage[pos];
+        }
     }
 
     /**
@@ -30,7 +185,19 @@ public class COLABlock<E extends Comparable<E>> {
      * @param element The element
      */
     public void set(int index, E element) {
-        elements[index] = element;
+        storage[offset + index] = element;
+        filterValid = false;
+    }
+
+    /**
+     * Copies the elements source[from, from + size) into this block.
+     *
+     * @param source The sorted elements
+     * @param from   The first index to copy
+     */
+    public void load(E[] source, int from) {
+        System.arraycopy(source, from, storage, offset, size);
+        filterValid = false;
     }
 
     /**
@@ -39,35 +206,237 @@ public class COLABlock<E extends Comparable<E>> {
      * @return The size
      */
     public int getSize() {
-        return elements.length;
+        return size;
+    }
+
+    /**
+     * Returns the offset of this block in the shared array.
+     *
+     * @return The offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns whether search uses an Eytzinger layout of this block.
+     *
+     * @return true if the block has an Eytzinger layout
+     */
+    public boolean hasEytzingerLayout() {
+        return useEytzinger;
+    }
+
+    /**
+     * Returns whether this block holds elements.
+     *
+     * @return true if the block is full; false if it is empty
+     */
+    public boolean isFull() {
+        return full;
     }
 
     /**
-     * Merges mergeBlock into this COLABlock.
-     * @param mergeBlock
+     * Marks this block as full or empty.
+     *
+     * @param full Whether the block holds elements
+     */
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    /**
+     * Merges the (full) mergeBlock with the sorted run [runStart, size) of this block into
+     * [runStart - mergeBlock.getSize(), size). The output never overtakes the unread part of the run, so the merge
+     * works in place.
+     *
+     * @param mergeBlock The smaller block
+     * @param runStart   The start of the run in this block
      */
-    public void merge(COLABlock<E> mergeBlock) {
-        E[] result = (E[]) new Comparable[elements.length * 2];
-        int resultPointer = 0;
+    public void merge(COLABlock<E> mergeBlock, int runStart) {
+        E[] result = storage;
+        int end = offset + size;
+        int rightPointer = offset + runStart;
+        int resultPointer = rightPointer - mergeBlock.size;
 
-        E[] leftArray = this.elements;
-        int leftPointer = 0;
-        E[] rightArray = mergeBlock.elements;
-        int rightPointer = 0;
+        E[] leftArray = mergeBlock.storage;
+        int leftPointer = mergeBlock.offset;
+        int leftEnd = leftPointer + mergeBlock.size;
 
-        while (leftPointer < leftArray.length && rightPointer < rightArray.length) {
-            if (leftArray[leftPointer].compareTo(rightArray[rightPointer]) <= 0)
+        while (leftPointer < leftEnd && rightPointer < end) {
+            if (leftArray[leftPointer].compareTo(result[rightPointer]) <= 0)
                 result[resultPointer++] = leftArray[leftPointer++];
             else {
-                result[resultPointer++] = rightArray[rightPointer++];
+                result[resultPointer++] = result[rightPointer++];
             }
         }
-        while (leftPointer < leftArray.length)
+        while (leftPointer < leftEnd)
             result[resultPointer++] = leftArray[leftPointer++];
-        while (rightPointer < rightArray.length)
-            result[resultPointer++] = rightArray[rightPointer++];
 
-        elements = result;
+        filterValid = false;
+    }
+
+    /**
+     * Merges like merge(mergeBlock, runStart), but on the ForkJoinPool. The run is first copied to the scratch array,
+     * because the pieces of a parallel merge cannot work in place.
+     *
+     * @param mergeBlock The smaller block
+     * @param runStart   The start of the run in this block
+     * @param scratch    An array holding at least size - runStart elements
+     */
+    public void parallelMerge(COLABlock<E> mergeBlock, int runStart, E[] scratch) {
+        int runLength = size - runStart;
+        System.arraycopy(storage, offset + runStart, scratch, 0, runLength);
+        ParallelMerge.merge(mergeBlock.storage, mergeBlock.offset, mergeBlock.offset + mergeBlock.size,
+                scratch, 0, runLength, storage, offset + runStart - mergeBlock.size);
+        filterValid = false;
+    }
+
+    /**
+     * Rebuilds the lookahead pointers of this block into the next larger block. Must be called whenever this block
+     * or the next block has changed.
+     * Also rebuilds the membership filter, the fence keys and the Eytzinger layout if the elements have changed.
+     *
+     * @param next The next larger block; null if this is the largest block.
+     */
+    public void link(COLABlock<E> next) {
+        if (full && !filterValid) {
+            if (useFilter) {
+                if (filter == null)
+                    filter = new BlockFilter(size);
+                filter.clear();
+                for (int i = offset; i < offset + size; i++)
+                    filter.add(BlockFilter.hash(storage[i]));
+            }
+            min = storage[offset];
+            max = storage[offset + size - 1];
+            if (useEytzinger) {
+                if (eytzinger == null)
+                    eytzinger = new EytzingerLayout<>(size);
+                eytzinger.build(storage, offset);
+            }
+            filterValid = true;
+        }
+
+        int elementCount = full ? size : 0;
+        nextLength = next == null ? 0 : next.cascadeLength;
+        int lookaheads = (nextLength + LOOKAHEAD_STRIDE - 1) / LOOKAHEAD_STRIDE;
+        cascadeLength = elementCount + lookaheads;
+
+        if (lookaheads == 0) {
+            cascade = storage;
+            cascadeOffset = offset;
+            return;
+        }
+
+        if (buffer == null || buffer.length < cascadeLength) {
+            // The next level holds at most 4/3 * 2^(k+1) + 2 entries, so this level never needs more than this
+            int capacity = Math.max(cascadeLength, size + size / 3 + 2);
+            buffer = (E[]) new Comparable[capacity];
+            down = new int[capacity];
+            left = new int[capacity];
+            right = new int[capacity];
+        }
+        cascade = buffer;
+        cascadeOffset = 0;
+
+        E[] nextCascade = next.cascade;
+        int nextOffset = next.cascadeOffset;
+        int elementPointer = offset;
+        int elementEnd = offset + elementCount;
+        int lookaheadPointer = 0;
+        for (int i = 0; i < cascadeLength; i++) {
+            if (lookaheadPointer < nextLength && (elementPointer == elementEnd
+                    || nextCascade[nextOffset + lookaheadPointer].compareTo(storage[elementPointer]) <= 0)) {
+                cascade[i] = nextCascade[nextOffset + lookaheadPointer];
+                down[i] = lookaheadPointer;
+                lookaheadPointer += LOOKAHEAD_STRIDE;
+            } else {
+                cascade[i] = storage[elementPointer++];
+                down[i] = -1;
+            }
+        }
+
+        int nearest = -1;
+        for (int i = 0; i < cascadeLength; i++) {
+            if (down[i] >= 0)
+                nearest = down[i];
+            left[i] = nearest;
+        }
+        nearest = nextLength;
+        for (int i = cascadeLength - 1; i >= 0; i--) {
+            if (down[i] >= 0)
+                nearest = down[i];
+            right[i] = nearest;
+        }
+    }
+
+    /**
+     * Returns false if this block definitely does not contain the element, i.e. it is empty, the element lies
+     * outside the fence keys or the membership filter (if any) rejects it; true if it may contain the element.
+     *
+     * @param element The element
+     * @param hash    The hash of the element, see BlockFilter.hash; ignored if the block has no filter
+     * @return false if the element is not in this block
+     */
+    public boolean mayContain(E element, long hash) {
+        return full && element.compareTo(min) >= 0 && element.compareTo(max) <= 0
+                && (!useFilter || filter.mayContain(hash));
+    }
+
+    /**
+     * Returns the number of entries (elements and lookahead pointers) in this block.
+     *
+     * @return The number of entries
+     */
+    public int getCascadeSize() {
+        return cascadeLength;
+    }
+
+    /**
+     * Returns the entry at the given index. Lookahead entries are elements of a larger block, so a matching entry
+     * is always an element of the data structure.
+     *
+     * @param index The index of the entry
+     * @return The entry
+     */
+    public E getCascadeEntry(int index) {
+        return cascade[cascadeOffset + index];
+    }
+
+    /**
+     * Searches for an element equal to the given element in the entries [from, to) of this block.
+     *
+     * @param element The element to search for.
+     * @param from    The first index to search (inclusive)
+     * @param to      The last index to search (exclusive)
+     * @return The index of the entry if found; otherwise (-(insertion point) - 1) as in Arrays.binarySearch.
+     */
+    public int searchCascade(E element, int from, int to) {
+        int pos = Arrays.binarySearch(cascade, cascadeOffset + from, cascadeOffset + to, element);
+        return pos >= 0 ? pos - cascadeOffset : pos + cascadeOffset;
+    }
+
+    /**
+     * Returns the first index of the next block that has to be searched, given the insertion point of an
+     * unsuccessful search in this block.
+     *
+     * @param insertionPoint The insertion point in this block
+     * @return The first index in the next block (inclusive)
+     */
+    public int nextFrom(int insertionPoint) {
+        return nextLength == 0 || insertionPoint == 0 ? 0 : left[insertionPoint - 1] + 1;
+    }
+
+    /**
+     * Returns the end of the window of the next block that has to be searched, given the insertion point of an
+     * unsuccessful search in this block.
+     *
+     * @param insertionPoint The insertion point in this block
+     * @return The last index in the next block (exclusive)
+     */
+    public int nextTo(int insertionPoint) {
+        return nextLength == 0 || insertionPoint == cascadeLength ? nextLength : right[insertionPoint];
     }
 
 }
@@ -1,40 +1,308 @@
 package cola;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class COLAImpl<E extends Comparable<E>> implements Insert<E>, Query<E> {
+/**
+ * A cache oblivious lookahead array. All levels live in one contiguous array, level k at offset 2^k - 1; level k is
+ * full if bit k of the element count is set. Inserts merge the full levels below the first empty level in place into
+ * it, so once the array has grown to its final size, inserting does not allocate.
+ */
+public class COLAImpl<E extends Comparable<E>> implements Insert<E>, Query<E>, Iterable<E> {
 
+    /**
+     * Levels 0 to 29, i.e. 2^30 - 1 elements, still fit into one array, so level 29 is the largest level.
+     */
+    static final int MAX_LEVELS = 30;
+
+    private E[] storage = (E[]) new Comparable[0];
+    // The block of level k is at index k
     private final ArrayList<COLABlock<E>> data = new ArrayList<>();
+    private int size = 0;
+    // Counts the inserts, so iterators over the reused levels can detect them
+    int modCount = 0;
+    private final boolean eytzingerLayout;
+    private final boolean membershipFilters;
+    // Reused by parallel merges and by insertAll to collect the batch and the levels it is merged with
+    private E[] scratch = (E[]) new Comparable[0];
+
+    public COLAImpl() {
+        this(false);
+    }
+
+    /**
+     * Creates a COLA whose large levels optionally also keep an Eytzinger layout for searching. The layout only pays
+     * off if comparing does not dereference the elements, e.g. with an inlined primitive key; with boxed elements the
+     * sorted array is usually faster (see COLAPerformanceTest).
+     *
+     * @param eytzingerLayout Whether levels of at least COLABlock.EYTZINGER_THRESHOLD elements keep the layout
+     */
+    public COLAImpl(boolean eytzingerLayout) {
+        this(eytzingerLayout, false);
+    }
+
+    /**
+     * Creates a COLA whose levels optionally also keep a membership filter, so findElement and searchAll skip most
+     * levels that do not contain the element. The filters hash the elements, so they may only be enabled if hashCode
+     * is consistent with compareTo, as it is for Integer, Long or String but not for BigDecimal; otherwise elements
+     * are missed. Without filters, levels are only skipped by their smallest and largest element.
+     *
+     * @param eytzingerLayout   Whether levels of at least COLABlock.EYTZINGER_THRESHOLD elements keep the layout
+     * @param membershipFilters Whether the levels keep membership filters
+     */
+    public COLAImpl(boolean eytzingerLayout, boolean membershipFilters) {
+        this.eytzingerLayout = eytzingerLayout;
+        this.membershipFilters = membershipFilters;
+    }
+
+    /**
+     * Creates a COLA from already sorted elements in O(n), without any merges.
+     *
+     * @param sorted The elements in ascending order
+     * @return The COLA containing the elements
+     */
+    public static <E extends Comparable<E>> COLAImpl<E> fromSorted(E[] sorted) {
+        COLAImpl<E> cola = new COLAImpl<>();
+        cola.distribute(sorted, sorted.length, 31);
+        return cola;
+    }
+
+    /**
+     * Returns the number of elements in this data structure.
+     *
+     * @return The number of elements
+     */
+    public int size() {
+        return size;
+    }
 
     public void insertElement(E key) {
-        COLABlock<E> insertBlock = new COLABlock<>(1);
-        insertBlock.set(0, key);
-        tryMerge(0, insertBlock);
-    }
-
-    private void tryMerge(int insertPosition, COLABlock<E> insertBlock) {
-        COLABlock<E> mergeBlock = null;
-        for (; insertPosition < data.size(); insertPosition++) {
-            COLABlock<E> mergeCandidate = data.get(insertPosition);
-            if (mergeCandidate.getSize() == insertBlock.getSize()) {
-                mergeBlock = mergeCandidate;
-                break;
-            } else if (mergeCandidate.getSize() > insertBlock.getSize()) {
-                break;
+        int target = Integer.numberOfTrailingZeros(~size);
+        ensureLevels(target + 1);
+
+        COLABlock<E> block = data.get(target);
+        block.set(block.getSize() - 1, key);
+        for (int i = 0; i < target; i++) {
+            COLABlock<E> lower = data.get(i);
+            if (lower.getSize() >= ParallelMerge.THRESHOLD) {
+                if (scratch.length < lower.getSize())
+                    scratch = (E[]) new Comparable[lower.getSize()];
+                block.parallelMerge(lower, block.getSize() - lower.getSize(), scratch);
+            } else {
+                block.merge(lower, block.getSize() - lower.getSize());
             }
+            lower.setFull(false);
         }
-        if (mergeBlock != null) {
-            mergeBlock.merge(insertBlock);
-            data.remove(insertPosition);
-            tryMerge(insertPosition, mergeBlock);
-        } else {
-            data.add(insertPosition, insertBlock);
+        block.setFull(true);
+        size++;
+        modCount++;
+        link(target);
+    }
+
+    /**
+     * Grows the shared array so that it holds the given number of levels. Levels keep their offsets, so the existing
+     * levels only switch to the new array; the new levels are empty, so they add no lookahead pointers to the levels
+     * below them and only have to be linked themselves.
+     */
+    private void ensureLevels(int levels) {
+        if (data.size() >= levels)
+            return;
+        if (levels > MAX_LEVELS)
+            throw new IllegalStateException("COLA full");
+
+        storage = Arrays.copyOf(storage, (1 << levels) - 1);
+        for (COLABlock<E> block : data)
+            block.setStorage(storage);
+        int first = data.size();
+        while (data.size() < levels)
+            data.add(new COLABlock<>(storage, data.size(), eytzingerLayout, membershipFilters));
+        for (int i = levels - 1; i >= first; i--)
+            data.get(i).link(i + 1 < levels ? data.get(i + 1) : null);
+    }
+
+    /**
+     * Rebuilds the lookahead pointers of the given level and all levels below it.
+     */
+    private void link(int level) {
+        for (int i = level; i >= 0; i--)
+            data.get(i).link(i + 1 < data.size() ? data.get(i + 1) : null);
+    }
+
+    /**
+     * Inserts all elements of the batch. The batch is sorted once together with all levels that change, so the
+     * cascade runs only once per batch.
+     *
+     * @param batch The elements
+     */
+    public void insertAll(E[] batch) {
+        insertBatch(batch);
+    }
+
+    /**
+     * Inserts all elements of the batch. The batch is sorted once together with all levels that change, so the
+     * cascade runs only once per batch.
+     *
+     * @param batch The elements
+     */
+    public void insertAll(Collection<? extends E> batch) {
+        insertBatch((E[]) batch.toArray(new Comparable[0]));
+    }
+
+    private void insertBatch(E[] batch) {
+        if (batch.length == 0)
+            return;
+        modCount++;
+        long newSize = (long) size + batch.length;
+        if (newSize >= 1L << MAX_LEVELS)
+            throw new IllegalStateException("COLA full");
+
+        // Adding the batch only changes the levels up to the highest bit in which the old and new size differ
+        int levels = 64 - Long.numberOfLeadingZeros(size ^ newSize);
+        int changed = (int) (newSize & ((1L << levels) - 1));
+        if (scratch.length < changed)
+            scratch = (E[]) new Comparable[Math.max(changed, scratch.length * 2)];
+
+        // The full levels are sorted runs; sorting their concatenation only merges them
+        int pointer = 0;
+        for (int i = 0; i < levels && i < data.size(); i++) {
+            COLABlock<E> block = data.get(i);
+            if (block.isFull()) {
+                System.arraycopy(storage, block.getOffset(), scratch, pointer, block.getSize());
+                pointer += block.getSize();
+            }
+        }
+        System.arraycopy(batch, 0, scratch, pointer, batch.length);
+        Arrays.sort(scratch, 0, changed);
+
+        size = (int) (newSize - changed);
+        distribute(scratch, changed, levels);
+        Arrays.fill(scratch, 0, changed, null);
+    }
+
+    /**
+     * Splits the first count sorted elements into the levels given by the binary representation of count; these
+     * levels must all be empty or about to be replaced. All other levels below the given number of levels are
+     * emptied.
+     */
+    private void distribute(E[] sorted, int count, int levels) {
+        ensureLevels(32 - Integer.numberOfLeadingZeros(count));
+        levels = Math.min(levels, data.size());
+
+        int from = 0;
+        for (int i = levels - 1; i >= 0; i--) {
+            COLABlock<E> block = data.get(i);
+            boolean full = (count & (1 << i)) != 0;
+            if (full) {
+                block.load(sorted, from);
+                from += block.getSize();
+            }
+            block.setFull(full);
         }
+        size += count;
+        link(levels - 1);
     }
 
     public E searchElement(E element) throws NoSuchElementException {
-        int last = data.size() - 1;
+        E found = findElement(element);
+        if (found == null)
+            throw new NoSuchElementException();
+        return found;
+    }
+
+    /**
+     * Searches the element top down, using the lookahead pointers of each block to narrow the search in the next
+     * block to a window of constant size. Runs in O(log n).
+     * Full blocks whose fence keys or membership filter (if enabled) exclude the element are skipped; the block after
+     * a skipped block is searched completely, using its Eytzinger layout if it has one. Empty blocks only hold
+     * lookahead pointers and are searched only to narrow the window of the next block.
+     */
+    @Override
+    public E findElement(E element) {
+        long hash = membershipFilters ? BlockFilter.hash(element) : 0;
+        int from = 0;
+        int to = -1; // no window known
+        int levels = 32 - Integer.numberOfLeadingZeros(size);
+        for (int i = 0; i < levels; i++) {
+            COLABlock<E> current = data.get(i);
+            if (current.isFull() ? !current.mayContain(element, hash) : to < 0) {
+                to = -1;
+                continue;
+            }
+            if (to < 0) {
+                // Without a window, a hit is found faster in the Eytzinger layout of a large block. After a miss
+                // the next block has to be searched completely anyway.
+                if (current.hasEytzingerLayout()) {
+                    E found = current.search(element);
+                    if (found != null)
+                        return found;
+                    continue;
+                }
+                from = 0;
+                to = current.getCascadeSize();
+            }
+            int pos = current.searchCascade(element, from, to);
+            if (pos >= 0)
+                return current.getCascadeEntry(pos);
+            int insertionPoint = -pos - 1;
+            from = current.nextFrom(insertionPoint);
+            to = current.nextTo(insertionPoint);
+        }
+        return null;
+    }
+
+    /**
+     * Searches a batch of elements. The probes are sorted once and every full block is then walked a single time,
+     * galloping from probe to probe and skipping probes its membership filter (if enabled) rejects, so m probes take
+     * O(m log(n / m)) comparisons per block instead of O(m log n) and the blocks are read front to back. Sorting
+     * dominates for small elements, so batches that already arrive in ascending order are not copied and sorted
+     * again.
+     *
+     * @param probes The elements to search for
+     * @return An array whose i-th entry is the instance of probes[i] in the data structure; null if not present
+     */
+    public E[] searchAll(E[] probes) {
+        boolean ascending = true;
+        for (int i = 1; i < probes.length && ascending; i++) {
+            ascending = probes[i - 1].compareTo(probes[i]) <= 0;
+        }
+        E[] sorted = probes;
+        if (!ascending) {
+            sorted = probes.clone();
+            Arrays.sort(sorted);
+        }
+        long[] hashes = null;
+        if (membershipFilters) {
+            hashes = new long[sorted.length];
+            for (int j = 0; j < sorted.length; j++) {
+                hashes[j] = BlockFilter.hash(sorted[j]);
+            }
+        }
+        E[] found = (E[]) new Comparable[sorted.length];
+        int levels = 32 - Integer.numberOfLeadingZeros(size);
+        for (int i = 0; i < levels; i++) {
+            data.get(i).searchAll(sorted, hashes, found);
+        }
+
+        E[] result = probes.clone();
+        for (int i = 0; i < probes.length; i++) {
+            result[i] = ascending ? found[i] : found[COLABlock.lowerBound(sorted, 0, sorted.length, probes[i])];
+        }
+        return result;
+    }
+
+    /**
+     * Searches the element by a full binary search in every block, without using the lookahead pointers.
+     * Runs in O(log^2 n); kept for comparison.
+     */
+    E searchElementLevelwise(E element) throws NoSuchElementException {
+        int last = Math.min(data.size(), 32 - Integer.numberOfLeadingZeros(size)) - 1;
         for (int i = 0; i <= last; i++) {
             COLABlock<E> current = data.get(i);
             E pair = current.search(element);
@@ -44,4 +312,83 @@ public class COLAImpl<E extends Comparable<E>> implements Insert<E>, Query<E> {
         throw new NoSuchElementException();
     }
 
+    /**
+     * Returns an iterator over all elements in ascending order. The blocks are merged lazily; the levels are reused
+     * by inserts, so the iterator must not be used after the COLA has been modified; it then throws a
+     * ConcurrentModificationException.
+     *
+     * @return The iterator
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Returns an iterator over all elements in [lo, hi) in ascending order. Each block is entered with one binary
+     * search per bound. Like iterator(), it reads the levels in place and throws a ConcurrentModificationException
+     * if used after an insert.
+     *
+     * @param lo The lower bound (inclusive)
+     * @param hi The upper bound (exclusive)
+     * @return The iterator
+     */
+    public Iterator<E> range(E lo, E hi) {
+        return Spliterators.iterator(rangeSpliterator(lo, hi));
+    }
+
+    /**
+     * Returns a spliterator over all elements in ascending order. It reads the levels in place and throws a
+     * ConcurrentModificationException if advanced or split after an insert.
+     *
+     * @return The spliterator
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return rangeSpliterator(null, null);
+    }
+
+    /**
+     * Returns a stream of all elements in ascending order, which may be processed in parallel. The COLA must not be
+     * modified until the stream has been consumed; the stream then throws a ConcurrentModificationException.
+     *
+     * @param parallel Whether the stream is parallel
+     * @return The stream
+     */
+    public Stream<E> stream(boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    /**
+     * Returns a stream of all elements in [lo, hi) in ascending order, which may be processed in parallel. The COLA
+     * must not be modified until the stream has been consumed; the stream then throws a
+     * ConcurrentModificationException.
+     *
+     * @param lo       The lower bound (inclusive)
+     * @param hi       The upper bound (exclusive)
+     * @param parallel Whether the stream is parallel
+     * @return The stream
+     */
+    public Stream<E> rangeStream(E lo, E hi, boolean parallel) {
+        return StreamSupport.stream(rangeSpliterator(lo, hi), parallel);
+    }
+
+    private Spliterator<E> rangeSpliterator(E lo, E hi) {
+        E[][] arrays = (E[][]) new Comparable[Integer.bitCount(size)][];
+        int[] positions = new int[arrays.length];
+        int[] ends = new int[arrays.length];
+        int index = 0;
+        for (COLABlock<E> block : data) {
+            if (!block.isFull())
+                continue;
+            int offset = block.getOffset();
+            int end = offset + block.getSize();
+            arrays[index] = storage;
+            positions[index] = lo == null ? offset : COLABlock.lowerBound(storage, offset, end, lo);
+            ends[index] = hi == null ? end : COLABlock.lowerBound(storage, positions[index], end, hi);
+            index++;
+        }
+        return new COLASpliterator<>(this, arrays, positions, ends);
+    }
+
 }
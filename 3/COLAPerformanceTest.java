@@ -1,11 +1,61 @@
 package cola;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 public class COLAPerformanceTest {
 
-    public static void main(String[] args) {
+    /**
+     * Returns the number of bytes the current thread has allocated so far.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Runs the given search for all probes and returns the average latency in nanoseconds.
+     */
+    private static double searchLatency(Function<Integer, Integer> search, Integer[] probes) {
+        long time = -System.nanoTime();
+        for (Integer probe : probes) {
+            try {
+                search.apply(probe);
+            } catch (NoSuchElementException ignored) {
+            }
+        }
+        time += System.nanoTime();
+        return (double) time / probes.length;
+    }
+
+    /**
+     * Inserts the given number of random elements and prints percentiles of the single insert latencies.
+     */
+    private static void insertLatency(String name, Insert<Integer> cola, int seed, int totalInsertOps) {
+        Random random = new Random(seed);
+        long[] latencies = new long[totalInsertOps];
+        for (int i = 0; i < totalInsertOps; i++) {
+            int next = random.nextInt();
+            long start = System.nanoTime();
+            cola.insertElement(next);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%s Insert Latency: p50 %d ns, p99 %d ns, p999 %d ns, max %d ns%n", name,
+                latencies[totalInsertOps / 2],
+                latencies[(int) (totalInsertOps * 0.99)],
+                latencies[(int) (totalInsertOps * 0.999)],
+                latencies[totalInsertOps - 1]);
+    }
+
+    public static void main(String[] args) throws IOException {
         final int totalInsertOps = 5_000_000;
         final int totalSearchOps = 500_000;
 
@@ -40,12 +90,29 @@ public class COLAPerformanceTest {
         System.out.println("Array Insertion Time: " + time);
 
 
+        long allocated = -allocatedBytes();
         time = -System.currentTimeMillis();
         for (int i = 0; i < totalInsertOps; i++) {
             cola.insertElement(randomCOLA.nextInt());
         }
         time += System.currentTimeMillis();
+        allocated += allocatedBytes();
         System.out.println("COLA Insertion Time: " + time);
+        System.out.println("COLA Allocation: " + allocated / totalInsertOps + " bytes/insert");
+
+        // Once the shared array has grown, inserting only allocates the boxed elements, which are created upfront here
+        final int steadyInsertOps = 1_000_000;
+        Integer[] steadyElements = new Integer[steadyInsertOps];
+        for (int i = 0; i < steadyInsertOps; i++) {
+            steadyElements[i] = randomCOLA.nextInt();
+        }
+        COLAImpl<Integer> steadyCola = COLAImpl.fromSorted(array);
+        allocated = -allocatedBytes();
+        for (Integer element : steadyElements) {
+            steadyCola.insertElement(element);
+        }
+        allocated += allocatedBytes();
+        System.out.println("COLA Steady State Allocation: " + allocated / steadyInsertOps + " bytes/insert");
 
 
         time = -System.currentTimeMillis();
@@ -55,6 +122,247 @@ public class COLAPerformanceTest {
 
         time += System.currentTimeMillis();
         System.out.println("Search : " + time);
+
+        Integer[] batchProbes = new Integer[totalSearchOps];
+        for (int i = 0; i < totalSearchOps; i++) {
+            batchProbes[i] = array[randomArray.nextInt(totalInsertOps)];
+        }
+        time = -System.currentTimeMillis();
+        for (Integer probe : batchProbes) {
+            cola.findElement(probe);
+        }
+        time += System.currentTimeMillis();
+        System.out.println("Single Lookups : " + time);
+
+        time = -System.currentTimeMillis();
+        cola.searchAll(batchProbes);
+        time += System.currentTimeMillis();
+        System.out.println("Batch Lookup : " + time);
+
+        Arrays.sort(batchProbes);
+        time = -System.currentTimeMillis();
+        for (Integer probe : batchProbes) {
+            cola.findElement(probe);
+        }
+        time += System.currentTimeMillis();
+        System.out.println("Sorted Single Lookups : " + time);
+
+        time = -System.currentTimeMillis();
+        cola.searchAll(batchProbes);
+        time += System.currentTimeMillis();
+        System.out.println("Sorted Batch Lookup : " + time);
+
+
+        time = -System.currentTimeMillis();
+        long sequentialSum = 0;
+        for (Integer element : cola) {
+            sequentialSum += element;
+        }
+        time += System.currentTimeMillis();
+        System.out.println("COLA Scan Time: " + time);
+
+        time = -System.currentTimeMillis();
+        long parallelSum = cola.stream(true).mapToLong(Integer::longValue).sum();
+        time += System.currentTimeMillis();
+        System.out.println("COLA Parallel Scan Time: " + time + (parallelSum == sequentialSum ? "" : " (wrong sum)"));
+
+
+        final int batchSize = 100_000;
+        COLAImpl<Integer> batchCola = new COLAImpl<>();
+        randomCOLA = new Random(seed);
+        Integer[] batch = new Integer[batchSize];
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalInsertOps / batchSize; i++) {
+            for (int j = 0; j < batchSize; j++) {
+                batch[j] = randomCOLA.nextInt();
+            }
+            batchCola.insertAll(batch);
+        }
+        time += System.currentTimeMillis();
+        System.out.println("COLA Batch Insertion Time: " + time);
+
+        time = -System.currentTimeMillis();
+        COLAImpl.fromSorted(array);
+        time += System.currentTimeMillis();
+        System.out.println("COLA Bulk Build Time: " + time);
+
+
+        KeyValueCOLA<Integer, Integer> keyValueCola = new KeyValueCOLA<>();
+        randomCOLA = new Random(seed);
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalInsertOps; i++) {
+            keyValueCola.put(randomCOLA.nextInt(totalInsertOps), i);
+        }
+        time += System.currentTimeMillis();
+        System.out.println("KeyValueCOLA Put Time: " + time);
+
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalSearchOps; i++) {
+            keyValueCola.get(randomArray.nextInt(totalInsertOps));
+        }
+        time += System.currentTimeMillis();
+        System.out.println("KeyValueCOLA Get Time: " + time);
+
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        randomCOLA = new Random(seed);
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalInsertOps; i++) {
+            treeMap.put(randomCOLA.nextInt(totalInsertOps), i);
+        }
+        time += System.currentTimeMillis();
+        System.out.println("TreeMap Put Time: " + time);
+
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalSearchOps; i++) {
+            treeMap.get(randomArray.nextInt(totalInsertOps));
+        }
+        time += System.currentTimeMillis();
+        System.out.println("TreeMap Get Time: " + time);
+
+
+        IntCOLA intCola = new IntCOLA();
+        randomCOLA = new Random(seed);
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalInsertOps; i++) {
+            intCola.insertElement(randomCOLA.nextInt());
+        }
+        time += System.currentTimeMillis();
+        System.out.println("IntCOLA Insertion Time: " + time);
+
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalSearchOps; i++) {
+            intCola.searchElement(array[randomArray.nextInt(totalInsertOps)]);
+        }
+        time += System.currentTimeMillis();
+        System.out.println("IntCOLA Search : " + time);
+
+        LongCOLA longCola = new LongCOLA();
+        randomCOLA = new Random(seed);
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalInsertOps; i++) {
+            longCola.insertElement(randomCOLA.nextInt());
+        }
+        time += System.currentTimeMillis();
+        System.out.println("LongCOLA Insertion Time: " + time);
+
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalSearchOps; i++) {
+            longCola.searchElement(array[randomArray.nextInt(totalInsertOps)]);
+        }
+        time += System.currentTimeMillis();
+        System.out.println("LongCOLA Search : " + time);
+
+
+        Integer[] hits = new Integer[totalSearchOps];
+        Integer[] misses = new Integer[totalSearchOps];
+        for (int i = 0; i < totalSearchOps; i++) {
+            hits[i] = array[randomArray.nextInt(totalInsertOps)];
+            int miss;
+            do {
+                miss = randomArray.nextInt();
+            } while (Arrays.binarySearch(array, miss) >= 0);
+            misses[i] = miss;
+        }
+
+        Path directory = Files.createTempDirectory("cola");
+        try (MappedLongCOLA mappedCola = new MappedLongCOLA(directory)) {
+            randomCOLA = new Random(seed);
+            time = -System.currentTimeMillis();
+            for (int i = 0; i < totalInsertOps; i++) {
+                mappedCola.insertElement(randomCOLA.nextInt());
+            }
+            time += System.currentTimeMillis();
+            System.out.println("MappedLongCOLA Insertion Time: " + time);
+        }
+
+        time = -System.currentTimeMillis();
+        try (MappedLongCOLA mappedCola = new MappedLongCOLA(directory)) {
+            time += System.currentTimeMillis();
+            System.out.println("MappedLongCOLA Reopen Time: " + time);
+
+            time = -System.currentTimeMillis();
+            for (int i = 0; i < totalSearchOps; i++) {
+                mappedCola.searchElement(array[randomArray.nextInt(totalInsertOps)]);
+            }
+            time += System.currentTimeMillis();
+            System.out.println("MappedLongCOLA Search : " + time);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+
+
+        // Times the two paths insertElement chooses between: merging a level into the upper half of the next level
+        // in place, and merging it on the ForkJoinPool
+        final int mergeLevel = 31 - Integer.numberOfLeadingZeros(totalInsertOps);
+        final int mergeSize = 1 << (mergeLevel - 1);
+        Integer[] mergeStorage = new Integer[(1 << (mergeLevel + 1)) - 1];
+        COLABlock<Integer> lowerBlock = new COLABlock<>(mergeStorage, mergeLevel - 1);
+        COLABlock<Integer> upperBlock = new COLABlock<>(mergeStorage, mergeLevel);
+        Integer[] mergeLeft = new Integer[mergeSize];
+        Integer[] mergeRun = new Integer[2 * mergeSize];
+        for (int i = 0; i < mergeSize; i++) {
+            mergeLeft[i] = array[2 * i];
+            mergeRun[mergeSize + i] = array[2 * i + 1];
+        }
+        lowerBlock.load(mergeLeft, 0);
+        Integer[] mergeScratch = new Integer[mergeSize];
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            upperBlock.load(mergeRun, 0);
+            time = -System.currentTimeMillis();
+            upperBlock.merge(lowerBlock, mergeSize);
+            time += System.currentTimeMillis();
+            System.out.println("Sequential Merge Time: " + time);
+
+            upperBlock.load(mergeRun, 0);
+            time = -System.currentTimeMillis();
+            upperBlock.parallelMerge(lowerBlock, mergeSize, mergeScratch);
+            time += System.currentTimeMillis();
+            System.out.println("Parallel Merge Time: " + time);
+        }
+
+
+        EytzingerLayout<Integer> eytzinger = new EytzingerLayout<>(totalInsertOps);
+        eytzinger.build(array, 0);
+        Integer[] probes = new Integer[totalSearchOps];
+        for (int i = 0; i < totalSearchOps; i++) {
+            probes[i] = array[randomArray.nextInt(totalInsertOps)];
+        }
+        Integer[] sortedArray = array;
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            System.out.printf("Sorted Array Search : %.1f ns%n",
+                    searchLatency(probe -> sortedArray[Arrays.binarySearch(sortedArray, probe)], probes));
+            System.out.printf("Eytzinger Search    : %.1f ns%n", searchLatency(eytzinger::search, probes));
+        }
+
+        COLAImpl<Integer> eytzingerCola = new COLAImpl<>(true);
+        eytzingerCola.insertAll(array);
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            System.out.printf("COLA Levelwise Search           : %.1f ns%n",
+                    searchLatency(cola::searchElementLevelwise, probes));
+            System.out.printf("Eytzinger COLA Levelwise Search : %.1f ns%n",
+                    searchLatency(eytzingerCola::searchElementLevelwise, probes));
+        }
+
+
+        insertLatency("Amortized", new COLAImpl<>(), seed, totalInsertOps);
+        insertLatency("Deamortized", new DeamortizedCOLA<>(), seed, totalInsertOps);
+
+        COLAImpl<Integer> finalCola = cola;
+        COLAImpl<Integer> filteredCola = new COLAImpl<>(false, true);
+        filteredCola.insertAll(array);
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            System.out.printf("Round %d%n", round);
+            System.out.printf("  Levelwise Hit  : %.1f ns%n", searchLatency(finalCola::searchElementLevelwise, hits));
+            System.out.printf("  Levelwise Miss : %.1f ns%n", searchLatency(finalCola::searchElementLevelwise, misses));
+            System.out.printf("  Cascading Hit  : %.1f ns%n", searchLatency(finalCola::searchElement, hits));
+            System.out.printf("  Cascading Miss : %.1f ns%n", searchLatency(finalCola::searchElement, misses));
+            System.out.printf("  Filtered Hit   : %.1f ns%n", searchLatency(filteredCola::findElement, hits));
+            System.out.printf("  Filtered Miss  : %.1f ns%n", searchLatency(filteredCola::findElement, misses));
+        }
     }
 
 }
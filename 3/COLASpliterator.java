@@ -0,0 +1,138 @@
+package cola;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Iterates over the elements of a range of COLA blocks in ascending order.
+ * Every block contributes a cursor into its (sorted) element array; the cursors are kept in a binary heap ordered by
+ * their current element, so the blocks are merged lazily without copying. Splitting picks the middle element of the
+ * largest remaining range as pivot and cuts every range at the pivot, so both halves are still ordered.
+ * The ranges are views of the levels, which inserts overwrite, so the spliterator fails once the COLA is modified.
+ */
+class COLASpliterator<E extends Comparable<E>> implements Spliterator<E> {
+
+    /**
+     * Ranges with fewer elements are not split any further.
+     */
+    static final int SPLIT_THRESHOLD = 1 << 12;
+
+    private final COLAImpl<E> cola;
+    private final int expectedModCount;
+    private final E[][] arrays;
+    private final int[] positions;
+    private final int[] ends;
+
+    // Heap of the indices of the non-empty ranges; built on the first traversal
+    private int[] heap;
+    private int heapSize;
+
+    COLASpliterator(COLAImpl<E> cola, E[][] arrays, int[] positions, int[] ends) {
+        this.cola = cola;
+        this.expectedModCount = cola.modCount;
+        this.arrays = arrays;
+        this.positions = positions;
+        this.ends = ends;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        checkForModification();
+        if (heap == null)
+            buildHeap();
+        if (heapSize == 0)
+            return false;
+
+        int top = heap[0];
+        action.accept(arrays[top][positions[top]++]);
+        if (positions[top] == ends[top])
+            heap[0] = heap[--heapSize];
+        if (heapSize > 0)
+            siftDown(0);
+        return true;
+    }
+
+    private void checkForModification() {
+        if (cola.modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    private void buildHeap() {
+        heap = new int[arrays.length];
+        for (int i = 0; i < arrays.length; i++) {
+            if (positions[i] < ends[i])
+                heap[heapSize++] = i;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--)
+            siftDown(i);
+    }
+
+    private void siftDown(int index) {
+        int cursor = heap[index];
+        E element = head(cursor);
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && head(heap[child + 1]).compareTo(head(heap[child])) < 0)
+                child++;
+            if (element.compareTo(head(heap[child])) <= 0)
+                break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = cursor;
+    }
+
+    private E head(int cursor) {
+        return arrays[cursor][positions[cursor]];
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        checkForModification();
+        if (heap != null || estimateSize() < SPLIT_THRESHOLD)
+            return null;
+
+        int largest = 0;
+        for (int i = 1; i < arrays.length; i++) {
+            if (ends[i] - positions[i] > ends[largest] - positions[largest])
+                largest = i;
+        }
+        E pivot = arrays[largest][(positions[largest] + ends[largest]) >>> 1];
+
+        int[] prefixPositions = positions.clone();
+        int[] prefixEnds = new int[arrays.length];
+        long prefixSize = 0;
+        for (int i = 0; i < arrays.length; i++) {
+            prefixEnds[i] = COLABlock.lowerBound(arrays[i], positions[i], ends[i], pivot);
+            prefixSize += prefixEnds[i] - positions[i];
+        }
+        if (prefixSize == 0)
+            return null;
+
+        System.arraycopy(prefixEnds, 0, positions, 0, arrays.length);
+        return new COLASpliterator<>(cola, arrays, prefixPositions, prefixEnds);
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = 0;
+        for (int i = 0; i < arrays.length; i++)
+            size += ends[i] - positions[i];
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | NONNULL | SIZED | SUBSIZED;
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        return null; // natural order
+    }
+
+}
@@ -0,0 +1,217 @@
+package cola;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread safe cache oblivious lookahead array.
+ * Writers append to a small unsorted buffer. A full buffer is sorted and published as a new run, and a background
+ * merger thread merges runs of the same level into runs of the next level, like the blocks of COLAImpl.
+ * Readers work on an immutable snapshot of the runs and never block; only writers synchronize with each other.
+ */
+public class ConcurrentCOLA<E extends Comparable<E>> implements Insert<E>, Query<E>, AutoCloseable {
+
+    static final int BUFFER_SIZE = 1 << 8;
+
+    /**
+     * Writers wait for the merger if there are this many unmerged runs, so reads stay fast.
+     */
+    static final int MAX_RUNS = 64;
+
+    private static final class Buffer<E> {
+        private final E[] elements;
+        // Written only by the writer holding the lock; the volatile write publishes the element before it
+        private volatile int size;
+
+        private Buffer() {
+            elements = (E[]) new Comparable[BUFFER_SIZE];
+        }
+    }
+
+    private static final class Run<E> {
+        private final E[] elements;
+        private final int level;
+
+        private Run(E[] elements, int level) {
+            this.elements = elements;
+            this.level = level;
+        }
+    }
+
+    private static final class Snapshot<E> {
+        private final Buffer<E> buffer;
+        // Runs ordered from the newest to the oldest; never modified
+        private final List<Run<E>> runs;
+
+        private Snapshot(Buffer<E> buffer, List<Run<E>> runs) {
+            this.buffer = buffer;
+            this.runs = runs;
+        }
+    }
+
+    private final AtomicReference<Snapshot<E>> snapshot =
+            new AtomicReference<>(new Snapshot<>(new Buffer<>(), List.of()));
+    private final Object monitor = new Object();
+    private final Thread merger;
+    private volatile boolean closed = false;
+
+    public ConcurrentCOLA() {
+        merger = new Thread(this::mergeLoop, "COLA merger");
+        merger.setDaemon(true);
+        merger.start();
+    }
+
+    public void insertElement(E element) {
+        synchronized (monitor) {
+            Snapshot<E> current = snapshot.get();
+            while (current.buffer.size == BUFFER_SIZE) {
+                if (current.runs.size() < MAX_RUNS || closed) {
+                    seal();
+                } else {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        seal();
+                    }
+                }
+                current = snapshot.get();
+            }
+
+            Buffer<E> buffer = current.buffer;
+            int size = buffer.size;
+            buffer.elements[size] = element;
+            buffer.size = size + 1;
+        }
+    }
+
+    /**
+     * Publishes the sorted buffer as the newest run and starts a new buffer. Only called while holding the monitor.
+     */
+    private void seal() {
+        E[] sorted = snapshot.get().buffer.elements.clone();
+        Arrays.sort(sorted);
+        Run<E> run = new Run<>(sorted, 0);
+        Buffer<E> buffer = new Buffer<>();
+
+        Snapshot<E> current;
+        List<Run<E>> runs;
+        do {
+            current = snapshot.get();
+            runs = new ArrayList<>(current.runs.size() + 1);
+            runs.add(run);
+            runs.addAll(current.runs);
+        } while (!snapshot.compareAndSet(current, new Snapshot<>(buffer, List.copyOf(runs))));
+        monitor.notifyAll();
+    }
+
+    private void mergeLoop() {
+        while (!closed) {
+            Run<E> newer = null;
+            Run<E> older = null;
+            synchronized (monitor) {
+                while (!closed && (older = findMergeCandidate(snapshot.get().runs)) == null) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed)
+                    return;
+                List<Run<E>> runs = snapshot.get().runs;
+                newer = runs.get(runs.indexOf(older) - 1);
+            }
+
+            Run<E> merged = new Run<>(merge(newer.elements, older.elements), older.level + 1);
+
+            Snapshot<E> current;
+            List<Run<E>> runs;
+            do {
+                current = snapshot.get();
+                runs = new ArrayList<>(current.runs);
+                int position = runs.indexOf(newer);
+                runs.remove(position);
+                runs.set(position, merged);
+            } while (!snapshot.compareAndSet(current, new Snapshot<>(current.buffer, List.copyOf(runs))));
+
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the older run of the oldest pair of adjacent runs of the smallest level that occurs twice; null if there
+     * is no such pair. Runs are only added in front and merging the oldest pair keeps the levels ascending from the
+     * newest to the oldest run, so runs of the same level are always adjacent.
+     */
+    private static <E> Run<E> findMergeCandidate(List<Run<E>> runs) {
+        Run<E> candidate = null;
+        for (int i = 1; i < runs.size(); i++) {
+            if (runs.get(i - 1).level == runs.get(i).level && (candidate == null || runs.get(i).level <= candidate.level))
+                candidate = runs.get(i);
+        }
+        return candidate;
+    }
+
+    private static <E extends Comparable<E>> E[] merge(E[] leftArray, E[] rightArray) {
+        E[] result = (E[]) new Comparable[leftArray.length + rightArray.length];
+        int resultPointer = 0;
+        int leftPointer = 0;
+        int rightPointer = 0;
+
+        while (leftPointer < leftArray.length && rightPointer < rightArray.length) {
+            if (leftArray[leftPointer].compareTo(rightArray[rightPointer]) <= 0)
+                result[resultPointer++] = leftArray[leftPointer++];
+            else
+                result[resultPointer++] = rightArray[rightPointer++];
+        }
+        while (leftPointer < leftArray.length)
+            result[resultPointer++] = leftArray[leftPointer++];
+        while (rightPointer < rightArray.length)
+            result[resultPointer++] = rightArray[rightPointer++];
+        return result;
+    }
+
+    public E searchElement(E element) throws NoSuchElementException {
+        E found = findElement(element);
+        if (found == null)
+            throw new NoSuchElementException();
+        return found;
+    }
+
+    /**
+     * Searches the element in the current snapshot, first in the buffer, then in the runs from the newest to the
+     * oldest. Never blocks.
+     */
+    public E findElement(E element) {
+        Snapshot<E> current = snapshot.get();
+        Buffer<E> buffer = current.buffer;
+        for (int i = buffer.size - 1; i >= 0; i--) {
+            if (buffer.elements[i].compareTo(element) == 0)
+                return buffer.elements[i];
+        }
+        for (Run<E> run : current.runs) {
+            int pos = Arrays.binarySearch(run.elements, element);
+            if (pos >= 0)
+                return run.elements[pos];
+        }
+        return null;
+    }
+
+    /**
+     * Stops the background merger. Elements can still be searched afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package cola;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentCOLAPerformanceTest {
+
+    private static final int PREFILL = 1_000_000;
+    private static final long DURATION_MILLIS = 2_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxReaders = Runtime.getRuntime().availableProcessors();
+
+        for (int readers = 1; readers <= maxReaders; readers *= 2) {
+            try (ConcurrentCOLA<Integer> cola = new ConcurrentCOLA<>()) {
+                Random random = new Random(151);
+                for (int i = 0; i < PREFILL; i++) {
+                    cola.insertElement(random.nextInt(PREFILL * 2));
+                }
+
+                AtomicBoolean running = new AtomicBoolean(true);
+                LongAdder reads = new LongAdder();
+                LongAdder writes = new LongAdder();
+
+                Thread writer = new Thread(() -> {
+                    Random writeRandom = new Random(152);
+                    while (running.get()) {
+                        cola.insertElement(writeRandom.nextInt(PREFILL * 2));
+                        writes.increment();
+                    }
+                });
+                Thread[] readerThreads = new Thread[readers];
+                for (int r = 0; r < readers; r++) {
+                    readerThreads[r] = new Thread(() -> {
+                        ThreadLocalRandom readRandom = ThreadLocalRandom.current();
+                        long count = 0;
+                        while (running.get()) {
+                            try {
+                                cola.searchElement(readRandom.nextInt(PREFILL * 2));
+                            } catch (NoSuchElementException ignored) {
+                            }
+                            count++;
+                        }
+                        reads.add(count);
+                    });
+                }
+
+                writer.start();
+                for (Thread reader : readerThreads) {
+                    reader.start();
+                }
+                Thread.sleep(DURATION_MILLIS);
+                running.set(false);
+                writer.join();
+                for (Thread reader : readerThreads) {
+                    reader.join();
+                }
+
+                System.out.printf("%d Readers: %d reads/s, %d writes/s%n", readers,
+                        reads.sum() * 1000 / DURATION_MILLIS, writes.sum() * 1000 / DURATION_MILLIS);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package cola;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A cache oblivious lookahead array with bounded worst-case insert cost.
+ * Every level k holds up to two full arrays of size 2^k. Once a level holds two arrays, they are merged into an array
+ * of size 2^(k+1) for the next level, but only MERGE_STEPS elements per insert and level are merged. The source
+ * arrays stay in place until the merge has finished, so queries never see a half merged array.
+ * An insert therefore costs O(log n) in the worst case instead of O(n) when a large level is merged.
+ */
+public class DeamortizedCOLA<E extends Comparable<E>> implements Insert<E>, Query<E> {
+
+    /**
+     * Number of elements merged per insert and level. A merge at level k must finish within the 2^k inserts before
+     * the next array arrives at level k, which needs at least two steps; four leave enough slack.
+     */
+    static final int MERGE_STEPS = 4;
+
+    private static class Level<E> {
+        // first is the older array, second the newer one
+        private E[] first;
+        private E[] second;
+
+        private E[] target;
+        private int firstPointer;
+        private int secondPointer;
+        private int targetPointer;
+
+        // arrays of this level that have been merged and can be reused
+        private final ArrayDeque<E[]> spares = new ArrayDeque<>(2);
+    }
+
+    private final ArrayList<Level<E>> levels = new ArrayList<>();
+
+    public void insertElement(E element) {
+        E[] insertArray = allocate(0);
+        insertArray[0] = element;
+        add(0, insertArray);
+        for (int i = 0; i < levels.size(); i++)
+            advance(i, MERGE_STEPS);
+    }
+
+    private E[] allocate(int level) {
+        if (level < levels.size()) {
+            E[] spare = levels.get(level).spares.poll();
+            if (spare != null)
+                return spare;
+        }
+        return (E[]) new Comparable[1 << level];
+    }
+
+    private void add(int level, E[] array) {
+        if (level == levels.size())
+            levels.add(new Level<>());
+        Level<E> current = levels.get(level);
+
+        // Only happens if a merge fell behind; finish it so that the level has room again
+        if (current.second != null)
+            advance(level, Integer.MAX_VALUE);
+
+        if (current.first == null) {
+            current.first = array;
+        } else {
+            current.second = array;
+            current.target = allocate(level + 1);
+            current.firstPointer = 0;
+            current.secondPointer = 0;
+            current.targetPointer = 0;
+        }
+    }
+
+    /**
+     * Merges up to the given number of elements at the given level and moves the result to the next level once the
+     * merge is complete.
+     */
+    private void advance(int level, int steps) {
+        Level<E> current = levels.get(level);
+        if (current.target == null)
+            return;
+
+        E[] first = current.first;
+        E[] second = current.second;
+        E[] target = current.target;
+        int firstPointer = current.firstPointer;
+        int secondPointer = current.secondPointer;
+        int targetPointer = current.targetPointer;
+        int end = (int) Math.min(target.length, (long) targetPointer + steps);
+
+        while (targetPointer < end) {
+            if (secondPointer == second.length
+                    || (firstPointer < first.length && first[firstPointer].compareTo(second[secondPointer]) <= 0))
+                target[targetPointer++] = first[firstPointer++];
+            else
+                target[targetPointer++] = second[secondPointer++];
+        }
+
+        current.firstPointer = firstPointer;
+        current.secondPointer = secondPointer;
+        current.targetPointer = targetPointer;
+
+        if (targetPointer == target.length) {
+            current.spares.offer(first);
+            current.spares.offer(second);
+            current.first = null;
+            current.second = null;
+            current.target = null;
+            add(level + 1, target);
+        }
+    }
+
+    public E searchElement(E element) throws NoSuchElementException {
+        E found = findElement(element);
+        if (found == null)
+            throw new NoSuchElementException();
+        return found;
+    }
+
+    /**
+     * Searches the element top down. Arrays that are currently being merged are still searched in place, the merge
+     * target only becomes visible after the merge has finished.
+     */
+    public E findElement(E element) {
+        for (Level<E> current : levels) {
+            E found = search(current.second, element);
+            if (found == null)
+                found = search(current.first, element);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+
+    private static <E> E search(E[] array, E element) {
+        if (array == null)
+            return null;
+        int pos = Arrays.binarySearch(array, element);
+        return pos < 0 ? null : array[pos];
+    }
+
+}
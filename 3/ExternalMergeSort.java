@@ -0,0 +1,350 @@
+package mergesort;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sorts a binary file of ints or longs that may not fit on the heap. The elements are stored big-endian, as written
+ * by DataOutputStream. The input is read in memory mapped chunks of runLength elements; each chunk is sorted by
+ * MergeSort and written to a temporary run file. The runs are then merged k-way through buffered file channels,
+ * MAX_FAN_IN consecutive runs at a time, so only one buffer per run is held in memory.
+ * Optionally, the inversions of the input are counted: the ones within a run while sorting it, the ones between runs
+ * while merging them. Only consecutive runs are merged, so every pair of elements is counted exactly once.
+ */
+public class ExternalMergeSort {
+
+    /**
+     * At most this many runs are merged at once; more runs are merged in several passes.
+     */
+    static final int MAX_FAN_IN = 64;
+
+    /**
+     * The size in bytes of the buffer of each run file and of the output file.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final int runLength;
+    private final Path tempDirectory;
+
+    /**
+     * Creates an external sort whose runs hold runLength elements, i.e. that needs about 2 * runLength elements of
+     * heap.
+     *
+     * @param runLength     The number of elements sorted in memory at once
+     * @param tempDirectory The directory the run files are created in
+     */
+    public ExternalMergeSort(int runLength, Path tempDirectory) {
+        if (runLength <= 0 || runLength > Integer.MAX_VALUE / Long.BYTES)
+            throw new IllegalArgumentException("run length out of range: " + runLength);
+        this.runLength = runLength;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Sorts the ints of the input file into the output file.
+     *
+     * @param input           The file to sort
+     * @param output          The file to write the sorted elements to; replaced if it exists
+     * @param countInversions Whether to count the inversions of the input
+     * @return The number of inversions of the input; -1 if they are not counted
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sortInts(Path input, Path output, boolean countInversions) throws IOException {
+        return sort(input, output, Integer.BYTES, countInversions);
+    }
+
+    /**
+     * Sorts the longs of the input file into the output file.
+     *
+     * @param input           The file to sort
+     * @param output          The file to write the sorted elements to; replaced if it exists
+     * @param countInversions Whether to count the inversions of the input
+     * @return The number of inversions of the input; -1 if they are not counted
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sortLongs(Path input, Path output, boolean countInversions) throws IOException {
+        return sort(input, output, Long.BYTES, countInversions);
+    }
+
+    private long sort(Path input, Path output, int width, boolean countInversions) throws IOException {
+        List<Path> temporary = new ArrayList<>();
+        try {
+            List<Path> runs = new ArrayList<>();
+            long inversions = createRuns(input, width, runs, temporary);
+
+            while (runs.size() > MAX_FAN_IN) {
+                List<Path> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                    List<Path> group = runs.subList(i, Math.min(i + MAX_FAN_IN, runs.size()));
+                    Path run = Files.createTempFile(tempDirectory, "run", ".bin");
+                    temporary.add(run);
+                    merged.add(run);
+                    inversions += merge(group, run, width, countInversions);
+                    for (Path done : group)
+                        Files.delete(done);
+                }
+                runs = merged;
+            }
+            inversions += merge(runs, output, width, countInversions);
+            return countInversions ? inversions : -1;
+        } finally {
+            for (Path run : temporary)
+                Files.deleteIfExists(run);
+        }
+    }
+
+    /**
+     * Sorts the input in chunks of runLength elements and writes each chunk to a new run file.
+     *
+     * @return The number of inversions within the runs
+     */
+    private long createRuns(Path input, int width, List<Path> runs, List<Path> temporary) throws IOException {
+        long inversions = 0;
+        int[] ints = null;
+        long[] longs = null;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            if (channel.size() % width != 0)
+                throw new IllegalArgumentException("file size is not a multiple of " + width + ": " + input);
+            long elements = channel.size() / width;
+
+            for (long start = 0; start < elements; start += runLength) {
+                int length = (int) Math.min(runLength, elements - start);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start * width,
+                        (long) length * width);
+                Path run = Files.createTempFile(tempDirectory, "run", ".bin");
+                temporary.add(run);
+                runs.add(run);
+
+                try (RunWriter writer = new RunWriter(run, width)) {
+                    if (width == Integer.BYTES) {
+                        if (ints == null || ints.length != length)
+                            ints = new int[length];
+                        chunk.asIntBuffer().get(ints);
+                        inversions += MergeSort.sortAndCount(ints);
+                        for (int element : ints)
+                            writer.write(element);
+                    } else {
+                        if (longs == null || longs.length != length)
+                            longs = new long[length];
+                        chunk.asLongBuffer().get(longs);
+                        inversions += MergeSort.sortAndCount(longs);
+                        for (long element : longs)
+                            writer.write(element);
+                    }
+                }
+            }
+        }
+        return inversions;
+    }
+
+    /**
+     * Merges the runs into the output file with a heap of the runs ordered by their next element. Equal elements are
+     * taken from the earlier run first, so when an element of run q is written, all remaining elements of the runs
+     * before q are larger and form inversions with it; their number is kept in a Fenwick tree over the runs.
+     *
+     * @return The number of inversions between the runs; 0 if they are not counted
+     */
+    private long merge(List<Path> runs, Path output, int width, boolean countInversions) throws IOException {
+        int runCount = runs.size();
+        RunReader[] readers = new RunReader[runCount];
+        try (RunWriter writer = new RunWriter(output, width)) {
+            long[] heads = new long[runCount];
+            int[] heap = new int[runCount];
+            int heapSize = 0;
+            long[] remaining = new long[runCount + 1];
+            for (int i = 0; i < runCount; i++) {
+                readers[i] = new RunReader(runs.get(i), width);
+                add(remaining, i, readers[i].remaining);
+                if (readers[i].hasNext()) {
+                    heads[i] = readers[i].next();
+                    heap[heapSize++] = i;
+                }
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--)
+                siftDown(heap, heapSize, heads, i);
+
+            long inversions = 0;
+            while (heapSize > 0) {
+                int run = heap[0];
+                writer.write(heads[run]);
+                if (countInversions) {
+                    inversions += prefixSum(remaining, run);
+                    add(remaining, run, -1);
+                }
+                if (readers[run].hasNext())
+                    heads[run] = readers[run].next();
+                else
+                    heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, heads, 0);
+            }
+            return inversions;
+        } finally {
+            for (RunReader reader : readers) {
+                if (reader != null)
+                    reader.close();
+            }
+        }
+    }
+
+    private static void siftDown(int[] heap, int heapSize, long[] heads, int index) {
+        int run = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child], heads))
+                child++;
+            if (!before(heap[child], run, heads))
+                break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = run;
+    }
+
+    private static boolean before(int run, int other, long[] heads) {
+        return heads[run] < heads[other] || heads[run] == heads[other] && run < other;
+    }
+
+    /**
+     * Adds delta to the entry of the given run in the Fenwick tree.
+     */
+    private static void add(long[] tree, int run, long delta) {
+        for (int i = run + 1; i < tree.length; i += i & -i)
+            tree[i] += delta;
+    }
+
+    /**
+     * Returns the sum of the entries of the runs before the given run in the Fenwick tree.
+     */
+    private static long prefixSum(long[] tree, int run) {
+        long sum = 0;
+        for (int i = run; i > 0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    /**
+     * Reads the ints or longs of a file sequentially through a buffer.
+     */
+    private static final class RunReader implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final int width;
+        private long remaining;
+
+        RunReader(Path file, int width) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.width = width;
+            this.remaining = channel.size() / width;
+            buffer.flip();
+        }
+
+        boolean hasNext() {
+            return remaining > 0;
+        }
+
+        long next() throws IOException {
+            if (buffer.remaining() < width) {
+                buffer.compact();
+                while (buffer.position() < width) {
+                    if (channel.read(buffer) < 0)
+                        throw new IOException("unexpected end of run file");
+                }
+                buffer.flip();
+            }
+            remaining--;
+            return width == Integer.BYTES ? buffer.getInt() : buffer.getLong();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes ints or longs to a file sequentially through a buffer.
+     */
+    private static final class RunWriter implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final int width;
+
+        RunWriter(Path file, int width) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.width = width;
+        }
+
+        void write(long element) throws IOException {
+            if (buffer.remaining() < width)
+                flush();
+            if (width == Integer.BYTES)
+                buffer.putInt((int) element);
+            else
+                buffer.putLong(element);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        final int elements = 10_000_000;
+        Path directory = Files.createTempDirectory("sort");
+        Path input = directory.resolve("input");
+        Path output = directory.resolve("output");
+
+        Random random = new Random(42);
+        int[] array = new int[elements];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(input)))) {
+            for (int i = 0; i < elements; i++) {
+                array[i] = random.nextInt();
+                out.writeInt(array[i]);
+            }
+        }
+
+        long time = -System.currentTimeMillis();
+        long inversions = new ExternalMergeSort(1 << 16, directory).sortInts(input, output, true);
+        time += System.currentTimeMillis();
+        System.out.println("External Sort Time: " + time);
+
+        time = -System.currentTimeMillis();
+        long expected = MergeSort.sortAndCount(array);
+        time += System.currentTimeMillis();
+        System.out.println("In Memory Sort Time: " + time);
+        System.out.println("Inversions: " + inversions + (inversions == expected ? "" : " (expected " + expected + ")"));
+
+        Files.delete(input);
+        Files.delete(output);
+        Files.delete(directory);
+    }
+
+}
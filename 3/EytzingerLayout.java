@@ -0,0 +1,56 @@
+package cola;
+
+/**
+ * A sorted range stored in Eytzinger (BFS) order: the root of the implicit search tree is at index 1 and the
+ * children of index k are at 2k and 2k + 1. The first levels of the tree share a few cache lines, and the 16
+ * candidates four steps below a node are adjacent, so the hardware prefetcher can fetch them early.
+ */
+class EytzingerLayout<E extends Comparable<E>> {
+
+    private final E[] tree;
+    private final int size;
+
+    EytzingerLayout(int size) {
+        this.tree = (E[]) new Comparable[size + 1];
+        this.size = size;
+    }
+
+    /**
+     * Rebuilds the layout from the sorted elements source[from, from + size).
+     *
+     * @param source The sorted elements
+     * @param from   The first index
+     */
+    void build(E[] source, int from) {
+        build(source, from, 1);
+    }
+
+    // In-order traversal of the implicit tree; returns the next index of source to read
+    private int build(E[] source, int next, int node) {
+        if (node <= size) {
+            next = build(source, next, 2 * node);
+            tree[node] = source[next++];
+            next = build(source, next, 2 * node + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Searches for an element equal (i.e. compareTo == 0) to the given element. The descent has no data dependent
+     * branch besides the comparison, which the JIT can turn into a conditional move.
+     *
+     * @param element The element to search for.
+     * @return The element in the layout; null if non-existent.
+     */
+    E search(E element) {
+        int node = 1;
+        while (node <= size)
+            node = 2 * node + (tree[node].compareTo(element) < 0 ? 1 : 0);
+        // Undo the right turns after the last left turn; that node is the first element not smaller than element
+        node >>>= Integer.numberOfTrailingZeros(~node) + 1;
+        if (node == 0 || tree[node].compareTo(element) != 0)
+            return null;
+        return tree[node];
+    }
+
+}
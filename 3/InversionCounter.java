@@ -0,0 +1,134 @@
+package mergesort;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Counts the inversions of a sequence of values that arrive one by one, optionally over a sliding window of the most
+ * recent values. The values are compressed to their ranks in a domain given upfront; a Fenwick tree counts the
+ * values of each rank in the window, so adding and expiring a value take O(log d) for a domain of d values, and the
+ * number of inversions in the window is always known.
+ * <p>
+ * A new value forms an inversion with every larger value in the window; the oldest value forms an inversion with
+ * every smaller value in the window.
+ */
+public class InversionCounter {
+
+    private final int[] domain;
+    private final int[] tree;
+    private final int window;
+    // The ranks of the values in the window in arrival order, as a ring buffer
+    private int[] ranks;
+    private int head = 0;
+    private int size = 0;
+    private long inversions = 0;
+
+    /**
+     * Creates a counter over all values added, until they are expired explicitly.
+     *
+     * @param domain All values that may be added, in any order and with duplicates
+     */
+    public InversionCounter(int[] domain) {
+        this(domain, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a counter over the window of the last values added; adding a value to a full window expires the
+     * oldest value.
+     *
+     * @param domain All values that may be added, in any order and with duplicates
+     * @param window The maximum number of values in the window
+     */
+    public InversionCounter(int[] domain, int window) {
+        if (window <= 0)
+            throw new IllegalArgumentException("window must be positive: " + window);
+        int[] sorted = domain.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[distinct++] = sorted[i];
+        }
+        this.domain = Arrays.copyOf(sorted, distinct);
+        this.tree = new int[distinct + 1];
+        this.window = window;
+        this.ranks = new int[Math.min(window, 16)];
+    }
+
+    /**
+     * Appends a value to the window, expiring the oldest value first if the window is full.
+     *
+     * @param value The value
+     * @throws IllegalArgumentException if the value is not in the domain
+     */
+    public void add(int value) {
+        int rank = Arrays.binarySearch(domain, value);
+        if (rank < 0)
+            throw new IllegalArgumentException("value not in domain: " + value);
+        if (size == window)
+            expire();
+
+        inversions += size - countAtMost(rank);
+        update(rank, 1);
+
+        if (size == ranks.length) {
+            int[] grown = new int[(int) Math.min((long) ranks.length * 2, window)];
+            for (int i = 0; i < size; i++)
+                grown[i] = ranks[(head + i) % ranks.length];
+            ranks = grown;
+            head = 0;
+        }
+        ranks[(head + size) % ranks.length] = rank;
+        size++;
+    }
+
+    /**
+     * Removes the oldest value from the window.
+     *
+     * @throws NoSuchElementException if the window is empty
+     */
+    public void expire() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        int rank = ranks[head];
+        head = (head + 1) % ranks.length;
+        size--;
+
+        update(rank, -1);
+        inversions -= rank == 0 ? 0 : countAtMost(rank - 1);
+    }
+
+    /**
+     * Returns the number of pairs of values in the window where the earlier value is larger than the later one.
+     *
+     * @return The number of inversions
+     */
+    public long inversions() {
+        return inversions;
+    }
+
+    /**
+     * Returns the number of values in the window.
+     *
+     * @return The number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    private void update(int rank, int delta) {
+        for (int i = rank + 1; i < tree.length; i += i & -i)
+            tree[i] += delta;
+    }
+
+    /**
+     * Returns the number of values in the window with a rank of at most the given rank.
+     */
+    private int countAtMost(int rank) {
+        int count = 0;
+        for (int i = rank + 1; i > 0; i -= i & -i)
+            count += tree[i];
+        return count;
+    }
+
+}
@@ -0,0 +1,137 @@
+package cola;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A cache oblivious lookahead array storing key-value pairs, organized like a log-structured merge tree.
+ * Every put or remove is written as a new entry into the smallest level; runs of the same level are merged as in
+ * COLAImpl. Newer runs shadow older ones, so a merge keeps only the newest entry of a key, and deletes are written as
+ * tombstones that are dropped once they are merged into the oldest run.
+ */
+public class KeyValueCOLA<K extends Comparable<K>, V> {
+
+    private static final Object TOMBSTONE = new Object();
+
+    private static class Run<K> {
+        // The run was created at this level, i.e. it holds at most 2^level entries
+        private final int level;
+        private final K[] keys;
+        private final Object[] values;
+        private final int size;
+
+        private Run(int level, K[] keys, Object[] values, int size) {
+            this.level = level;
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        /**
+         * Merges the newer and the older run into one run of the next level. Entries of the older run are dropped if
+         * the newer run contains the same key; tombstones are dropped if there is no older data left.
+         */
+        private static <K extends Comparable<K>> Run<K> merge(Run<K> newer, Run<K> older, boolean oldest) {
+            K[] keys = (K[]) new Comparable[newer.size + older.size];
+            Object[] values = new Object[keys.length];
+            int resultPointer = 0;
+            int newerPointer = 0;
+            int olderPointer = 0;
+
+            while (newerPointer < newer.size || olderPointer < older.size) {
+                int compare;
+                if (newerPointer == newer.size)
+                    compare = 1;
+                else if (olderPointer == older.size)
+                    compare = -1;
+                else
+                    compare = newer.keys[newerPointer].compareTo(older.keys[olderPointer]);
+
+                K key;
+                Object value;
+                if (compare <= 0) {
+                    key = newer.keys[newerPointer];
+                    value = newer.values[newerPointer++];
+                    if (compare == 0)
+                        olderPointer++; // shadowed by the newer entry
+                } else {
+                    key = older.keys[olderPointer];
+                    value = older.values[olderPointer++];
+                }
+
+                if (!oldest || value != TOMBSTONE) {
+                    keys[resultPointer] = key;
+                    values[resultPointer++] = value;
+                }
+            }
+            return new Run<>(Math.max(newer.level, older.level) + 1, keys, values, resultPointer);
+        }
+    }
+
+    // Runs ordered from the newest (and smallest) to the oldest (and largest)
+    private final ArrayList<Run<K>> data = new ArrayList<>();
+
+    /**
+     * Associates the given value with the given key, replacing a previous value.
+     * The previous value is not looked up, so the operation costs an amortized O((log n) / B) block transfers.
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    public void put(K key, V value) {
+        write(key, value);
+    }
+
+    /**
+     * Removes the given key by writing a tombstone for it.
+     *
+     * @param key The key
+     */
+    public void remove(K key) {
+        write(key, TOMBSTONE);
+    }
+
+    private void write(K key, Object value) {
+        K[] keys = (K[]) new Comparable[]{key};
+        Run<K> insertRun = new Run<>(0, keys, new Object[]{value}, 1);
+        while (!data.isEmpty() && data.get(0).level == insertRun.level) {
+            Run<K> older = data.remove(0);
+            insertRun = Run.merge(insertRun, older, data.isEmpty());
+        }
+        data.add(0, insertRun);
+    }
+
+    /**
+     * Gets the value associated with the given key. The runs are searched from the newest to the oldest; the search
+     * stops at the first run that holds an entry for the key.
+     *
+     * @param key The key to search for.
+     * @return The value associated with the key; null if key is not in the data structure.
+     */
+    public V get(K key) {
+        for (Run<K> run : data) {
+            int pos = Arrays.binarySearch(run.keys, 0, run.size, key);
+            if (pos >= 0) {
+                Object value = run.values[pos];
+                return value == TOMBSTONE ? null : (V) value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the given key is associated with a value.
+     *
+     * @param key The key to search for.
+     * @return true if the key is present
+     */
+    public boolean containsKey(K key) {
+        for (Run<K> run : data) {
+            int pos = Arrays.binarySearch(run.keys, 0, run.size, key);
+            if (pos >= 0)
+                return run.values[pos] != TOMBSTONE;
+        }
+        return false;
+    }
+
+}
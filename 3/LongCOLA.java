@@ -0,0 +1,84 @@
+package cola;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A cache oblivious lookahead array specialized for primitive long keys.
+ * Level k is a long[2^k] that is either completely full or empty, like the bits of the element count.
+ * The arrays are allocated once and merges are done in place, so inserts do not allocate in steady state.
+ */
+public class LongCOLA {
+
+    private final long[][] levels = new long[Integer.SIZE][];
+    private int size = 0;
+
+    /**
+     * Inserts a new element into this data structure
+     *
+     * @param element The element
+     * @throws IllegalStateException if the data structure is full
+     */
+    public void insertElement(long element) {
+        if (size == Integer.MAX_VALUE)
+            throw new IllegalStateException("COLA full");
+
+        // The first empty level is the lowest zero bit of size; all levels below it are full
+        int target = Integer.numberOfTrailingZeros(~size);
+        if (levels[target] == null)
+            levels[target] = new long[1 << target];
+
+        long[] result = levels[target];
+        int end = result.length;
+        result[end - 1] = element;
+        for (int i = 0; i < target; i++)
+            merge(levels[i], result, end - (1 << i), end);
+        size++;
+    }
+
+    /**
+     * Merges the (full) array left with the sorted run result[rightStart, end) into result[rightStart - left.length,
+     * end). The output never overtakes the unread part of the right run, so no buffer is needed.
+     */
+    private static void merge(long[] left, long[] result, int rightStart, int end) {
+        int leftPointer = 0;
+        int rightPointer = rightStart;
+        int resultPointer = rightStart - left.length;
+
+        while (leftPointer < left.length && rightPointer < end) {
+            if (left[leftPointer] <= result[rightPointer])
+                result[resultPointer++] = left[leftPointer++];
+            else
+                result[resultPointer++] = result[rightPointer++];
+        }
+        while (leftPointer < left.length)
+            result[resultPointer++] = left[leftPointer++];
+    }
+
+    /**
+     * Searches the element with a top down algorithm, i.e.,
+     * first looking in the smallest array, then the second smallest, ...,
+     * and lastly in the largest array.
+     *
+     * @param element The element
+     * @return the element
+     * @throws NoSuchElementException if the element is not present
+     */
+    public long searchElement(long element) throws NoSuchElementException {
+        for (int i = 0; i < levels.length; i++) {
+            if ((size & (1 << i)) != 0 && Arrays.binarySearch(levels[i], element) >= 0)
+                return element;
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Returns the number of elements in this data structure.
+     *
+     * @return The number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,187 @@
+package cola;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * A cache oblivious lookahead array for long keys whose levels are stored on disk.
+ * Level k is a file of 2^k longs that is memory mapped once and reused; it is full if bit k of the element count is
+ * set, like in LongCOLA. A merge only writes the first empty level, sequentially, and reads the full levels below it
+ * sequentially. The element count is stored in a separate file, so reopening the directory only maps the files.
+ * All changes are written to the mappings, so they survive the death of the process. After an operating system
+ * crash or power loss, the files are only consistent if nothing was inserted since the last flush or close: the
+ * kernel writes dirty pages back in any order, so the stored element count may refer to a half merged level.
+ */
+public class MappedLongCOLA implements AutoCloseable {
+
+    /**
+     * A single mapping is limited to 2 GiB, so level 27 (1 GiB) is the largest level.
+     */
+    static final int MAX_LEVEL = 27;
+
+    private final Path directory;
+    private final FileChannel[] channels = new FileChannel[MAX_LEVEL + 1];
+    private final MappedByteBuffer[] mappings = new MappedByteBuffer[MAX_LEVEL + 1];
+    private final LongBuffer[] levels = new LongBuffer[MAX_LEVEL + 1];
+    private final FileChannel metaChannel;
+    private final MappedByteBuffer meta;
+    private int size;
+
+    /**
+     * Opens the COLA stored in the given directory, or creates a new one if the directory contains none.
+     *
+     * @param directory The directory holding the level files
+     * @throws IOException if the files cannot be opened
+     */
+    public MappedLongCOLA(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        metaChannel = FileChannel.open(directory.resolve("size"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        size = (int) meta.getLong(0);
+
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            if ((size & (1 << i)) != 0)
+                map(i);
+        }
+    }
+
+    private LongBuffer map(int level) throws IOException {
+        if (levels[level] == null) {
+            channels[level] = FileChannel.open(directory.resolve("level-" + level),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mappings[level] = channels[level].map(FileChannel.MapMode.READ_WRITE, 0, (long) Long.BYTES << level);
+            levels[level] = mappings[level].asLongBuffer();
+        }
+        return levels[level];
+    }
+
+    /**
+     * Inserts a new element into this data structure
+     *
+     * @param element The element
+     * @throws IllegalStateException if the largest level is full
+     * @throws UncheckedIOException  if a level file cannot be mapped
+     */
+    public void insertElement(long element) {
+        int target = Integer.numberOfTrailingZeros(~size);
+        if (target > MAX_LEVEL)
+            throw new IllegalStateException("COLA full");
+
+        LongBuffer result;
+        try {
+            result = map(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int end = 1 << target;
+        result.put(end - 1, element);
+        for (int i = 0; i < target; i++)
+            merge(levels[i], result, end - (1 << i), end);
+
+        size++;
+        meta.putLong(0, size);
+    }
+
+    /**
+     * Merges the (full) level left with the sorted run result[rightStart, end) into result[rightStart - left size,
+     * end), as in LongCOLA. Both levels are read and written sequentially.
+     */
+    private static void merge(LongBuffer left, LongBuffer result, int rightStart, int end) {
+        int leftSize = left.capacity();
+        int leftPointer = 0;
+        int rightPointer = rightStart;
+        int resultPointer = rightStart - leftSize;
+
+        while (leftPointer < leftSize && rightPointer < end) {
+            long leftElement = left.get(leftPointer);
+            long rightElement = result.get(rightPointer);
+            if (leftElement <= rightElement) {
+                result.put(resultPointer++, leftElement);
+                leftPointer++;
+            } else {
+                result.put(resultPointer++, rightElement);
+                rightPointer++;
+            }
+        }
+        while (leftPointer < leftSize)
+            result.put(resultPointer++, left.get(leftPointer++));
+    }
+
+    /**
+     * Searches the element with a top down algorithm, i.e.,
+     * first looking in the smallest level, then the second smallest, ...,
+     * and lastly in the largest level.
+     *
+     * @param element The element
+     * @return the element
+     * @throws NoSuchElementException if the element is not present
+     */
+    public long searchElement(long element) throws NoSuchElementException {
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            if ((size & (1 << i)) != 0 && binarySearch(levels[i], element))
+                return element;
+        }
+        throw new NoSuchElementException();
+    }
+
+    private static boolean binarySearch(LongBuffer level, long element) {
+        int low = 0;
+        int high = level.capacity() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midElement = level.get(mid);
+            if (midElement < element)
+                low = mid + 1;
+            else if (midElement > element)
+                high = mid - 1;
+            else
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of elements in this data structure.
+     *
+     * @return The number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes all changes to disk. The levels are written before the element count.
+     */
+    public void flush() {
+        for (MappedByteBuffer mapping : mappings) {
+            if (mapping != null)
+                mapping.force();
+        }
+        meta.force();
+    }
+
+    /**
+     * Flushes all changes and closes the level files.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        for (FileChannel channel : channels) {
+            if (channel != null)
+                channel.close();
+        }
+        metaChannel.close();
+    }
+
+}
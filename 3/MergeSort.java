@@ -1,59 +1,347 @@
 package mergesort;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the inversions of an array while sorting it with merge sort. A single scratch array is allocated per call;
+ * the recursion alternates between the array and the scratch array, so merging never copies the runs first.
+ */
 public class MergeSort {
 
-    public static int sortAndCount(int[] array) {
-        return sortAndCount(array, 0, array.length - 1);
+    /**
+     * Ranges with fewer elements are sorted by insertion sort, counting the shifts.
+     */
+    static final int INSERTION_SORT_THRESHOLD = 32;
+
+    /**
+     * Ranges with fewer elements are sorted sequentially by parallelSortAndCount.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * adaptiveSortAndCount extends runs shorter than this by insertion sort.
+     */
+    static final int MIN_RUN = 32;
+
+    /**
+     * adaptiveSortAndCount ends a run of at least MIN_RUN elements at the first element that is out of place by
+     * more than this many positions.
+     */
+    static final int MAX_SHIFT = 32;
+
+    /**
+     * Sorts the array and counts its inversions.
+     *
+     * @param array The array to sort
+     * @return The number of pairs i < j with array[i] > array[j] before sorting
+     */
+    public static long sortAndCount(int[] array) {
+        int[] scratch = array.clone();
+        return sortAndCount(scratch, array, 0, array.length);
+    }
+
+    /**
+     * Sorts the array and counts its inversions like sortAndCount, but sorts the halves of large ranges in parallel
+     * on the common ForkJoinPool.
+     *
+     * @param array The array to sort
+     * @return The number of pairs i < j with array[i] > array[j] before sorting
+     */
+    public static long parallelSortAndCount(int[] array) {
+        int[] scratch = array.clone();
+        if (array.length < PARALLEL_THRESHOLD)
+            return sortAndCount(scratch, array, 0, array.length);
+        return ForkJoinPool.commonPool().invoke(new SortAndCountTask(scratch, array, 0, array.length));
     }
 
-    private static int sortAndCount(int[] array, int low, int high) {
-        int inversions = 0;
+    /**
+     * Sorts the array and counts its inversions like sortAndCount, but adapts to presortedness: existing runs are
+     * detected and merged with galloping, so a sorted or nearly sorted array takes close to O(n) time.
+     * <p>
+     * A run is extended as long as each next element is at most MAX_SHIFT positions out of place, by inserting it;
+     * runs shorter than MIN_RUN are extended regardless. A strictly descending prefix of a run is reversed. The runs
+     * are then merged pairwise, alternating between the array and a scratch array. On random input, sortAndCount is
+     * faster.
+     *
+     * @param array The array to sort
+     * @return The number of pairs i < j with array[i] > array[j] before sorting
+     */
+    public static long adaptiveSortAndCount(int[] array) {
+        int n = array.length;
+        long inversions = 0;
+        // bounds[i] is the start of run i; bounds[runs] == n
+        int[] bounds = new int[n / MIN_RUN + 2];
+        int runs = 0;
+
+        int start = 0;
+        while (start < n) {
+            int end = start + 1;
+            if (end < n && array[end] < array[start]) {
+                while (end < n && array[end] < array[end - 1])
+                    end++;
+                reverse(array, start, end);
+                inversions += (long) (end - start) * (end - start - 1) / 2;
+            }
+            while (end < n) {
+                int element = array[end];
+                if (array[end - 1] > element) {
+                    if (end - start >= MIN_RUN && array[end - MAX_SHIFT] > element)
+                        break;
+                    int j = end;
+                    while (j > start && array[j - 1] > element) {
+                        array[j] = array[j - 1];
+                        j--;
+                    }
+                    array[j] = element;
+                    inversions += end - j;
+                }
+                end++;
+            }
+            bounds[runs++] = start;
+            start = end;
+        }
+        bounds[runs] = n;
+
+        int[] source = array;
+        int[] target = runs > 1 ? new int[n] : array;
+        while (runs > 1) {
+            int merged = 0;
+            for (int i = 0; i < runs; i += 2) {
+                int low = bounds[i];
+                if (i + 1 < runs)
+                    inversions += gallopingMerge(source, target, low, bounds[i + 1], bounds[i + 2]);
+                else
+                    System.arraycopy(source, low, target, low, n - low);
+                bounds[merged++] = low;
+            }
+            bounds[merged] = n;
+            runs = merged;
+
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != array)
+            System.arraycopy(source, 0, array, 0, n);
+        return inversions;
+    }
 
-        if (low < high) {
-            int split = low + (high - low) / 2;
-            inversions += sortAndCount(array, low, split);
-            inversions += sortAndCount(array, split + 1, high);
-            inversions += merge(array, low, split, high);
+    private static void reverse(int[] array, int from, int to) {
+        for (to--; from < to; from++, to--) {
+            int swap = array[from];
+            array[from] = array[to];
+            array[to] = swap;
         }
+    }
+
+    /**
+     * Merges the sorted runs source[low, split) and source[split, high) into target[low, high) like merge, but moves
+     * whole blocks: the elements of the low run up to the next high element, then the elements of the high run below
+     * the next low element, each block found by galloping. Every element of a high block is an inversion with every
+     * remaining element of the low run.
+     */
+    private static long gallopingMerge(int[] source, int[] target, int low, int split, int high) {
+        int lowPointer = low;
+        int highPointer = split;
+        long inversions = 0;
 
+        int targetPointer = low;
+
+        while (lowPointer < split && highPointer < high) {
+            int lowEnd = gallop(source, lowPointer, split, source[highPointer], true);
+            System.arraycopy(source, lowPointer, target, targetPointer, lowEnd - lowPointer);
+            targetPointer += lowEnd - lowPointer;
+            lowPointer = lowEnd;
+            if (lowPointer == split)
+                break;
+
+            int highEnd = gallop(source, highPointer, high, source[lowPointer], false);
+            System.arraycopy(source, highPointer, target, targetPointer, highEnd - highPointer);
+            targetPointer += highEnd - highPointer;
+            inversions += (long) (highEnd - highPointer) * (split - lowPointer);
+            highPointer = highEnd;
+        }
+        System.arraycopy(source, lowPointer, target, targetPointer, split - lowPointer);
+        targetPointer += split - lowPointer;
+        System.arraycopy(source, highPointer, target, targetPointer, high - highPointer);
         return inversions;
     }
 
-    private static int merge(int[] array, int low, int split, int high) {
-        int lowElements = split - low + 1;
-        int[] lowCopy = new int[lowElements];
-        System.arraycopy(array, low, lowCopy, 0, lowElements);
+    /**
+     * Returns the index of the first element in array[from, to) that is larger than the key (or not smaller, if
+     * orEqual is false), probing from, from + 1, from + 3, from + 7, ... before a binary search.
+     */
+    private static int gallop(int[] array, int from, int to, int key, boolean orEqual) {
+        int hi = from;
+        int step = 1;
+        while (hi < to && (orEqual ? array[hi] <= key : array[hi] < key)) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        hi = Math.min(hi, to);
+        while (from < hi) {
+            int mid = (from + hi) >>> 1;
+            if (orEqual ? array[mid] <= key : array[mid] < key)
+                from = mid + 1;
+            else
+                hi = mid;
+        }
+        return from;
+    }
 
-        int highElements = high - (split + 1) + 1;
-        int[] highCopy = new int[highElements];
-        System.arraycopy(array, split + 1, highCopy, 0, highElements);
+    /**
+     * Sorts [low, high) into target and returns the number of inversions in it. Both arrays must hold the same
+     * elements in [low, high); afterwards source[low, high) is undefined.
+     */
+    private static long sortAndCount(int[] source, int[] target, int low, int high) {
+        if (high - low < INSERTION_SORT_THRESHOLD)
+            return insertionSortAndCount(target, low, high);
+
+        int split = (low + high) >>> 1;
+        long inversions = sortAndCount(target, source, low, split);
+        inversions += sortAndCount(target, source, split, high);
+        return inversions + merge(source, target, low, split, high);
+    }
+
+    private static long insertionSortAndCount(int[] array, int low, int high) {
+        long inversions = 0;
+        for (int i = low + 1; i < high; i++) {
+            int element = array[i];
+            int j = i;
+            while (j > low && array[j - 1] > element) {
+                array[j] = array[j - 1];
+                j--;
+            }
+            array[j] = element;
+            inversions += i - j;
+        }
+        return inversions;
+    }
 
-        int lowPointer = 0;
-        int highPointer = 0;
-        int inversions = 0;
+    /**
+     * Merges the sorted runs source[low, split) and source[split, high) into target[low, high).
+     */
+    private static long merge(int[] source, int[] target, int low, int split, int high) {
+        int lowPointer = low;
+        int highPointer = split;
+        long inversions = 0;
 
-        int arrayPointer = low;
+        int targetPointer = low;
 
-        while (lowPointer < lowCopy.length && highPointer < highCopy.length) {
-            if (lowCopy[lowPointer] <= highCopy[highPointer])
-                array[arrayPointer++] = lowCopy[lowPointer++];
+        while (lowPointer < split && highPointer < high) {
+            if (source[lowPointer] <= source[highPointer])
+                target[targetPointer++] = source[lowPointer++];
             else {
-                array[arrayPointer++] = highCopy[highPointer++];
+                target[targetPointer++] = source[highPointer++];
+
+                // All following elements of the low run are inversions w.r.t. the current element of the high run
+                inversions += split - lowPointer;
+            }
+        }
+        System.arraycopy(source, lowPointer, target, targetPointer, split - lowPointer);
+        targetPointer += split - lowPointer;
+        System.arraycopy(source, highPointer, target, targetPointer, high - highPointer);
+        return inversions;
+    }
+
+    /**
+     * Sorts the array and counts its inversions, like sortAndCount(int[]).
+     *
+     * @param array The array to sort
+     * @return The number of pairs i < j with array[i] > array[j] before sorting
+     */
+    public static long sortAndCount(long[] array) {
+        long[] scratch = array.clone();
+        return sortAndCount(scratch, array, 0, array.length);
+    }
+
+    private static long sortAndCount(long[] source, long[] target, int low, int high) {
+        if (high - low < INSERTION_SORT_THRESHOLD)
+            return insertionSortAndCount(target, low, high);
+
+        int split = (low + high) >>> 1;
+        long inversions = sortAndCount(target, source, low, split);
+        inversions += sortAndCount(target, source, split, high);
+        return inversions + merge(source, target, low, split, high);
+    }
+
+    private static long insertionSortAndCount(long[] array, int low, int high) {
+        long inversions = 0;
+        for (int i = low + 1; i < high; i++) {
+            long element = array[i];
+            int j = i;
+            while (j > low && array[j - 1] > element) {
+                array[j] = array[j - 1];
+                j--;
+            }
+            array[j] = element;
+            inversions += i - j;
+        }
+        return inversions;
+    }
+
+    private static long merge(long[] source, long[] target, int low, int split, int high) {
+        int lowPointer = low;
+        int highPointer = split;
+        long inversions = 0;
+
+        int targetPointer = low;
 
-                // All following elements in lowCopy are inversions w.r.t. the current element in highCopy
-                inversions += lowElements - lowPointer;
+        while (lowPointer < split && highPointer < high) {
+            if (source[lowPointer] <= source[highPointer])
+                target[targetPointer++] = source[lowPointer++];
+            else {
+                target[targetPointer++] = source[highPointer++];
+                inversions += split - lowPointer;
             }
         }
-        while (lowPointer < lowCopy.length)
-            array[arrayPointer++] = lowCopy[lowPointer++];
-        while (highPointer < highCopy.length)
-            array[arrayPointer++] = highCopy[highPointer++];
+        System.arraycopy(source, lowPointer, target, targetPointer, split - lowPointer);
+        targetPointer += split - lowPointer;
+        System.arraycopy(source, highPointer, target, targetPointer, high - highPointer);
         return inversions;
     }
 
+    private static class SortAndCountTask extends RecursiveTask<Long> {
+
+        private final int[] source;
+        private final int[] target;
+        private final int low;
+        private final int high;
+
+        SortAndCountTask(int[] source, int[] target, int low, int high) {
+            this.source = source;
+            this.target = target;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected Long compute() {
+            if (high - low < PARALLEL_THRESHOLD)
+                return sortAndCount(source, target, low, high);
+
+            int split = (low + high) >>> 1;
+            SortAndCountTask lowTask = new SortAndCountTask(target, source, low, split);
+            SortAndCountTask highTask = new SortAndCountTask(target, source, split, high);
+            highTask.fork();
+            long inversions = lowTask.compute();
+            inversions += highTask.join();
+            return inversions + merge(source, target, low, split, high);
+        }
+    }
+
     public static void main(String[] args) {
-        int result = sortAndCount(new int[]{2, 5, 9, 4, 1, 13});
+        long result = sortAndCount(new int[]{2, 5, 9, 4, 1, 13});
         System.out.println(result);
+
+        // 2^20 elements in descending order have 2^20 * (2^20 - 1) / 2 inversions, more than an int can hold
+        int[] descending = new int[1 << 20];
+        for (int i = 0; i < descending.length; i++) {
+            descending[i] = descending.length - i;
+        }
+        System.out.println(parallelSortAndCount(descending));
     }
 
 }
@@ -0,0 +1,108 @@
+package cola;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merges two sorted ranges into a third, disjoint range on a ForkJoinPool.
+ * The larger input is split at its middle element; the other input is split at the position of this element, found
+ * by binary search, so both halves can be merged independently. Small ranges are merged sequentially.
+ */
+class ParallelMerge<E extends Comparable<E>> extends RecursiveAction {
+
+    /**
+     * Ranges with fewer elements in total are merged sequentially.
+     */
+    static final int THRESHOLD = 1 << 15;
+
+    private final E[] left;
+    private final int leftFrom;
+    private final int leftTo;
+    private final E[] right;
+    private final int rightFrom;
+    private final int rightTo;
+    private final E[] result;
+    private final int resultFrom;
+
+    private ParallelMerge(E[] left, int leftFrom, int leftTo, E[] right, int rightFrom, int rightTo,
+                          E[] result, int resultFrom) {
+        this.left = left;
+        this.leftFrom = leftFrom;
+        this.leftTo = leftTo;
+        this.right = right;
+        this.rightFrom = rightFrom;
+        this.rightTo = rightTo;
+        this.result = result;
+        this.resultFrom = resultFrom;
+    }
+
+    /**
+     * Merges left[leftFrom, leftTo) and right[rightFrom, rightTo) into result starting at resultFrom. The result range
+     * must not overlap the input ranges.
+     */
+    static <E extends Comparable<E>> void merge(E[] left, int leftFrom, int leftTo, E[] right, int rightFrom,
+                                                int rightTo, E[] result, int resultFrom) {
+        ParallelMerge<E> task = new ParallelMerge<>(left, leftFrom, leftTo, right, rightFrom, rightTo, result,
+                resultFrom);
+        if ((leftTo - leftFrom) + (rightTo - rightFrom) < THRESHOLD)
+            task.compute();
+        else
+            ForkJoinPool.commonPool().invoke(task);
+    }
+
+    @Override
+    protected void compute() {
+        int leftSize = leftTo - leftFrom;
+        int rightSize = rightTo - rightFrom;
+        if (leftSize + rightSize < THRESHOLD) {
+            mergeSequential();
+            return;
+        }
+
+        int leftSplit;
+        int rightSplit;
+        if (leftSize >= rightSize) {
+            leftSplit = (leftFrom + leftTo) >>> 1;
+            rightSplit = COLABlock.lowerBound(right, rightFrom, rightTo, left[leftSplit]);
+        } else {
+            rightSplit = (rightFrom + rightTo) >>> 1;
+            leftSplit = upperBound(left, leftFrom, leftTo, right[rightSplit]);
+        }
+        int resultSplit = resultFrom + (leftSplit - leftFrom) + (rightSplit - rightFrom);
+
+        invokeAll(new ParallelMerge<>(left, leftFrom, leftSplit, right, rightFrom, rightSplit, result, resultFrom),
+                new ParallelMerge<>(left, leftSplit, leftTo, right, rightSplit, rightTo, result, resultSplit));
+    }
+
+    /**
+     * Returns the index of the first element in array[from, to) that is larger than the given element.
+     */
+    private static <E extends Comparable<E>> int upperBound(E[] array, int from, int to, E element) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (array[mid].compareTo(element) <= 0)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    private void mergeSequential() {
+        int leftPointer = leftFrom;
+        int rightPointer = rightFrom;
+        int resultPointer = resultFrom;
+
+        while (leftPointer < leftTo && rightPointer < rightTo) {
+            if (left[leftPointer].compareTo(right[rightPointer]) <= 0)
+                result[resultPointer++] = left[leftPointer++];
+            else
+                result[resultPointer++] = right[rightPointer++];
+        }
+        while (leftPointer < leftTo)
+            result[resultPointer++] = left[leftPointer++];
+        while (rightPointer < rightTo)
+            result[resultPointer++] = right[rightPointer++];
+    }
+
+}
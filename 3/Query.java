@@ -14,4 +14,18 @@ public interface Query<E extends Comparable<E>> {
      * @throws NoSuchElementException if the element if element is not present
      */
     E searchElement(E element) throws NoSuchElementException;
+
+    /**
+     * Searches the element like searchElement, but reports a missing element without an exception.
+     *
+     * @param element The element of the element
+     * @return the instance of this element in the data structure; null if the element is not present
+     */
+    default E findElement(E element) {
+        try {
+            return searchElement(element);
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
 }
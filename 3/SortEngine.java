@@ -0,0 +1,325 @@
+package mergesort;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Sorts int and long arrays without comparisons where the data allows it. Small arrays are sorted by Arrays.sort.
+ * Larger arrays are sorted by an LSD radix sort on the offsets of the elements from the minimum, with 8 bit digits;
+ * a narrow key range needs fewer passes, and passes in which all elements share the digit are skipped. Even the 8
+ * passes of a full long range beat Arrays.sort on 10^7 elements (see SortPerformanceTest). Arrays of at least
+ * PARALLEL_THRESHOLD elements are sorted by a sample sort on the common ForkJoinPool when it has more than one
+ * thread: the elements are scattered into buckets between sampled splitters, and the buckets are sorted in parallel.
+ * <p>
+ * An engine keeps its histograms (one per sample sort worker) and its scratch array between calls and must not be
+ * used by several threads at once.
+ */
+public class SortEngine {
+
+    /**
+     * Arrays with fewer elements are sorted by Arrays.sort.
+     */
+    static final int RADIX_THRESHOLD = 1 << 8;
+
+    /**
+     * Arrays with at least this many elements are sorted by sample sort.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int MASK = RADIX - 1;
+
+    /**
+     * Sample sort uses this many buckets per thread, and this many samples per bucket.
+     */
+    static final int BUCKETS_PER_THREAD = 4;
+    static final int OVERSAMPLING = 32;
+
+    private final int parallelism;
+    private final int[] histogram = new int[RADIX];
+    // workerHistograms[w] is used by sample sort worker w for the buckets w, w + parallelism, ...
+    private int[][] workerHistograms;
+    private int[] intBuffer = new int[0];
+    private long[] longBuffer = new long[0];
+
+    public SortEngine() {
+        this(ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Creates an engine that uses sample sort only if parallelism is larger than 1.
+     *
+     * @param parallelism The number of threads to plan the buckets of sample sort for
+     */
+    public SortEngine(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sorts the array in ascending order.
+     *
+     * @param array The array to sort
+     */
+    public void sort(int[] array) {
+        int n = array.length;
+        if (n < RADIX_THRESHOLD) {
+            Arrays.sort(array);
+            return;
+        }
+        if (intBuffer.length < n)
+            intBuffer = new int[n];
+        if (n >= PARALLEL_THRESHOLD && parallelism > 1)
+            sampleSort(array, intBuffer);
+        else
+            radixSort(array, 0, n, intBuffer, histogram);
+    }
+
+    /**
+     * Sorts the array in ascending order.
+     *
+     * @param array The array to sort
+     */
+    public void sort(long[] array) {
+        int n = array.length;
+        if (n < RADIX_THRESHOLD) {
+            Arrays.sort(array);
+            return;
+        }
+        if (longBuffer.length < n)
+            longBuffer = new long[n];
+        if (n >= PARALLEL_THRESHOLD && parallelism > 1)
+            sampleSort(array, longBuffer);
+        else
+            sortRange(array, 0, n, longBuffer, histogram);
+    }
+
+    /**
+     * Sorts array[from, to) by LSD radix sort on the offsets from the minimum, using buffer[from, to) as scratch.
+     */
+    private static void radixSort(int[] array, int from, int to, int[] buffer, int[] histogram) {
+        int min = array[from];
+        int max = array[from];
+        for (int i = from + 1; i < to; i++) {
+            min = Math.min(min, array[i]);
+            max = Math.max(max, array[i]);
+        }
+        // max - min is the largest offset, as an unsigned int
+        int bits = 32 - Integer.numberOfLeadingZeros(max - min);
+
+        int[] source = array;
+        int[] target = buffer;
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            Arrays.fill(histogram, 0);
+            for (int i = from; i < to; i++)
+                histogram[((source[i] - min) >>> shift) & MASK]++;
+            if (histogram[((source[from] - min) >>> shift) & MASK] == to - from)
+                continue;
+
+            int position = from;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int count = histogram[digit];
+                histogram[digit] = position;
+                position += count;
+            }
+            for (int i = from; i < to; i++)
+                target[histogram[((source[i] - min) >>> shift) & MASK]++] = source[i];
+
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != array)
+            System.arraycopy(source, from, array, from, to - from);
+    }
+
+    /**
+     * Sorts array[from, to) by LSD radix sort on the offsets from the minimum, or by Arrays.sort if the range is small.
+     */
+    private static void sortRange(long[] array, int from, int to, long[] buffer, int[] histogram) {
+        if (to - from < RADIX_THRESHOLD) {
+            Arrays.sort(array, from, to);
+            return;
+        }
+        long min = array[from];
+        long max = array[from];
+        for (int i = from + 1; i < to; i++) {
+            min = Math.min(min, array[i]);
+            max = Math.max(max, array[i]);
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(max - min);
+
+        long[] source = array;
+        long[] target = buffer;
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            Arrays.fill(histogram, 0);
+            for (int i = from; i < to; i++)
+                histogram[(int) ((source[i] - min) >>> shift) & MASK]++;
+            if (histogram[(int) ((source[from] - min) >>> shift) & MASK] == to - from)
+                continue;
+
+            int position = from;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int count = histogram[digit];
+                histogram[digit] = position;
+                position += count;
+            }
+            for (int i = from; i < to; i++)
+                target[histogram[(int) ((source[i] - min) >>> shift) & MASK]++] = source[i];
+
+            long[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != array)
+            System.arraycopy(source, from, array, from, to - from);
+    }
+
+    /**
+     * Scatters the elements into buckets between sampled splitters, in parallel chunks, and sorts the buckets in
+     * parallel. Elements equal to a splitter all go into the same bucket.
+     */
+    private void sampleSort(int[] array, int[] buffer) {
+        int n = array.length;
+        int buckets = parallelism * BUCKETS_PER_THREAD;
+        int[] sample = new int[(buckets - 1) * OVERSAMPLING];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < sample.length; i++)
+            sample[i] = array[random.nextInt(n)];
+        Arrays.sort(sample);
+        int[] splitters = new int[buckets - 1];
+        for (int i = 0; i < splitters.length; i++)
+            splitters[i] = sample[i * OVERSAMPLING + OVERSAMPLING / 2];
+
+        int chunks = parallelism;
+        int[][] offsets = new int[chunks][buckets];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int[] counts = offsets[chunk];
+            for (int i = chunkStart(n, chunks, chunk); i < chunkStart(n, chunks, chunk + 1); i++)
+                counts[bucket(splitters, array[i])]++;
+        });
+        int[] bucketStarts = prefixSums(offsets, buckets, n);
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int[] positions = offsets[chunk];
+            for (int i = chunkStart(n, chunks, chunk); i < chunkStart(n, chunks, chunk + 1); i++)
+                buffer[positions[bucket(splitters, array[i])]++] = array[i];
+        });
+
+        // Each bucket is sorted in buffer with array as scratch, then copied back
+        int[][] histograms = workerHistograms();
+        IntStream.range(0, parallelism).parallel().forEach(worker -> {
+            for (int bucket = worker; bucket < buckets; bucket += parallelism) {
+                int from = bucketStarts[bucket];
+                int to = bucketStarts[bucket + 1];
+                if (to - from < RADIX_THRESHOLD)
+                    Arrays.sort(buffer, from, to);
+                else
+                    radixSort(buffer, from, to, array, histograms[worker]);
+                System.arraycopy(buffer, from, array, from, to - from);
+            }
+        });
+    }
+
+    /**
+     * Sorts like sampleSort(int[], int[]).
+     */
+    private void sampleSort(long[] array, long[] buffer) {
+        int n = array.length;
+        int buckets = parallelism * BUCKETS_PER_THREAD;
+        long[] sample = new long[(buckets - 1) * OVERSAMPLING];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < sample.length; i++)
+            sample[i] = array[random.nextInt(n)];
+        Arrays.sort(sample);
+        long[] splitters = new long[buckets - 1];
+        for (int i = 0; i < splitters.length; i++)
+            splitters[i] = sample[i * OVERSAMPLING + OVERSAMPLING / 2];
+
+        int chunks = parallelism;
+        int[][] offsets = new int[chunks][buckets];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int[] counts = offsets[chunk];
+            for (int i = chunkStart(n, chunks, chunk); i < chunkStart(n, chunks, chunk + 1); i++)
+                counts[bucket(splitters, array[i])]++;
+        });
+        int[] bucketStarts = prefixSums(offsets, buckets, n);
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int[] positions = offsets[chunk];
+            for (int i = chunkStart(n, chunks, chunk); i < chunkStart(n, chunks, chunk + 1); i++)
+                buffer[positions[bucket(splitters, array[i])]++] = array[i];
+        });
+
+        int[][] histograms = workerHistograms();
+        IntStream.range(0, parallelism).parallel().forEach(worker -> {
+            for (int bucket = worker; bucket < buckets; bucket += parallelism) {
+                int from = bucketStarts[bucket];
+                int to = bucketStarts[bucket + 1];
+                sortRange(buffer, from, to, array, histograms[worker]);
+                System.arraycopy(buffer, from, array, from, to - from);
+            }
+        });
+    }
+
+    private int[][] workerHistograms() {
+        if (workerHistograms == null)
+            workerHistograms = new int[parallelism][RADIX];
+        return workerHistograms;
+    }
+
+    private static int chunkStart(int n, int chunks, int chunk) {
+        return (int) ((long) n * chunk / chunks);
+    }
+
+    /**
+     * Turns the element counts per chunk and bucket into the positions each chunk writes its elements of a bucket
+     * to, and returns the start of every bucket (and n at the end).
+     */
+    private static int[] prefixSums(int[][] offsets, int buckets, int n) {
+        int[] bucketStarts = new int[buckets + 1];
+        int position = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            bucketStarts[bucket] = position;
+            for (int[] counts : offsets) {
+                int count = counts[bucket];
+                counts[bucket] = position;
+                position += count;
+            }
+        }
+        bucketStarts[buckets] = n;
+        return bucketStarts;
+    }
+
+    /**
+     * Returns the number of splitters smaller than the element.
+     */
+    private static int bucket(int[] splitters, int element) {
+        int low = 0;
+        int high = splitters.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (splitters[mid] < element)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static int bucket(long[] splitters, long element) {
+        int low = 0;
+        int high = splitters.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (splitters[mid] < element)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,56 @@
+package mergesort;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+public class SortPerformanceTest {
+
+    /**
+     * Sorts a copy of the input with the given sort and returns the time in milliseconds.
+     */
+    private static <T> long time(Consumer<T> sort, T copy) {
+        long time = -System.currentTimeMillis();
+        sort.accept(copy);
+        time += System.currentTimeMillis();
+        return time;
+    }
+
+    public static void main(String[] args) {
+        final int size = 10_000_000;
+        Random random = new Random(42);
+
+        int[] ints = new int[size];
+        int[] narrowInts = new int[size];
+        long[] longs = new long[size];
+        long[] narrowLongs = new long[size];
+        for (int i = 0; i < size; i++) {
+            ints[i] = random.nextInt();
+            narrowInts[i] = random.nextInt(1 << 16);
+            longs[i] = random.nextLong();
+            narrowLongs[i] = (1L << 40) + random.nextInt(size);
+        }
+
+        SortEngine engine = new SortEngine();
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            System.out.printf("Round %d%n", round);
+            System.out.println("  int MergeSort          : " + time(MergeSort::sortAndCount, ints.clone()));
+            System.out.println("  int Arrays.sort        : " + time(Arrays::sort, ints.clone()));
+            System.out.println("  int Arrays.parallelSort: " + time(Arrays::parallelSort, ints.clone()));
+            System.out.println("  int SortEngine         : " + time(engine::sort, ints.clone()));
+            System.out.println("  16 bit Arrays.sort     : " + time(Arrays::sort, narrowInts.clone()));
+            System.out.println("  16 bit SortEngine      : " + time(engine::sort, narrowInts.clone()));
+            System.out.println("  long Arrays.sort       : " + time(Arrays::sort, longs.clone()));
+            System.out.println("  long SortEngine        : " + time(engine::sort, longs.clone()));
+            System.out.println("  narrow long Arrays.sort: " + time(Arrays::sort, narrowLongs.clone()));
+            System.out.println("  narrow long SortEngine : " + time(engine::sort, narrowLongs.clone()));
+        }
+
+        int[] sorted = ints.clone();
+        Arrays.sort(sorted);
+        int[] sampleSorted = ints.clone();
+        new SortEngine(4).sort(sampleSorted);
+        System.out.println("Sample Sort: " + (Arrays.equals(sorted, sampleSorted) ? "ok" : "wrong result"));
+    }
+
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set backed by a sorted, growable array. contains is a binary search; add and remove shift the elements behind
+ * the position. union merges both sets backwards into the grown array; intersect and subtract walk the smaller set
+ * and gallop through the larger one, so they take O(m log(n / m)) comparisons for sets of sizes m <= n.
+ * <p>
+ * After freeze, the array is trimmed and every modification throws UnsupportedOperationException.
+ */
+public class ArraySet<E extends Comparable<E>> implements Set<E> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private E[] elements;
+    private int size = 0;
+    private boolean frozen = false;
+
+    @SuppressWarnings("unchecked")
+    public ArraySet() {
+        elements = (E[]) new Comparable[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Makes this set immutable and trims its array to its size.
+     *
+     * @return this set
+     */
+    public ArraySet<E> freeze() {
+        if (!frozen) {
+            elements = Arrays.copyOf(elements, size);
+            frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Returns whether this set has been frozen.
+     *
+     * @return true if the set is immutable
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkMutable() {
+        if (frozen)
+            throw new UnsupportedOperationException("set is frozen");
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (elements.length < capacity)
+            elements = Arrays.copyOf(elements, Math.max(capacity, elements.length * 2));
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return The number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(E element) {
+        checkMutable();
+        int pos = Arrays.binarySearch(elements, 0, size, element);
+        if (pos >= 0)
+            return false;
+        int insertionPoint = -pos - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(elements, insertionPoint, elements, insertionPoint + 1, size - insertionPoint);
+        elements[insertionPoint] = element;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(E element) {
+        checkMutable();
+        int pos = Arrays.binarySearch(elements, 0, size, element);
+        if (pos < 0)
+            return false;
+        System.arraycopy(elements, pos + 1, elements, pos, size - pos - 1);
+        elements[--size] = null;
+        return true;
+    }
+
+    @Override
+    public boolean contains(E element) {
+        return Arrays.binarySearch(elements, 0, size, element) >= 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The elements of a set in ascending order, without duplicates: elements[0, size).
+     */
+    private static final class SortedElements<E> {
+
+        private final E[] elements;
+        private final int size;
+
+        SortedElements(E[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Returns the elements of the given set in ascending order. The array of an ArraySet is used directly; any other
+     * set is copied, sorted and deduplicated first.
+     *
+     * @param set the given set
+     * @return the sorted elements
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Comparable<E>> SortedElements<E> sortedElements(Set<E> set) {
+        if (set instanceof ArraySet) {
+            ArraySet<E> arraySet = (ArraySet<E>) set;
+            return new SortedElements<>(arraySet.elements, arraySet.size);
+        }
+
+        ArrayList<E> copy = new ArrayList<>();
+        for (E element : set) {
+            copy.add(element);
+        }
+        E[] sorted = copy.toArray((E[]) new Comparable[0]);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i].compareTo(sorted[distinct - 1]) != 0)
+                sorted[distinct++] = sorted[i];
+        }
+        return new SortedElements<>(sorted, distinct);
+    }
+
+    /**
+     * Returns the index of the first element in array[from, to) that is not smaller than the key, probing from,
+     * from + 1, from + 3, from + 7, ... before a binary search.
+     */
+    private static <E extends Comparable<E>> int gallop(E[] array, int from, int to, E key) {
+        int hi = from;
+        int step = 1;
+        while (hi < to && array[hi].compareTo(key) < 0) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        hi = Math.min(hi, to);
+        while (from < hi) {
+            int mid = (from + hi) >>> 1;
+            if (array[mid].compareTo(key) < 0)
+                from = mid + 1;
+            else
+                hi = mid;
+        }
+        return from;
+    }
+
+    /**
+     * Merges the other elements into the grown array from the back, so no element is moved twice; the gap left by
+     * common elements is closed by a single copy.
+     */
+    @Override
+    public void union(Set<E> set) {
+        checkMutable();
+        if (set == this)
+            return;
+        SortedElements<E> sorted = sortedElements(set);
+        E[] other = sorted.elements;
+        int otherSize = sorted.size;
+        ensureCapacity(size + otherSize);
+
+        int i = size - 1;
+        int j = otherSize - 1;
+        int k = size + otherSize - 1;
+        while (j >= 0) {
+            int compare = i < 0 ? 1 : other[j].compareTo(elements[i]);
+            if (compare > 0) {
+                elements[k--] = other[j--];
+            } else {
+                // Like add, an equal element keeps the instance already in this set
+                elements[k--] = elements[i--];
+                if (compare == 0)
+                    j--;
+            }
+        }
+        // elements[0, i] are in place; the merged elements start at k + 1
+        int merged = size + otherSize - (k + 1);
+        System.arraycopy(elements, k + 1, elements, i + 1, merged);
+        int newSize = i + 1 + merged;
+        Arrays.fill(elements, newSize, size + otherSize, null);
+        size = newSize;
+    }
+
+    @Override
+    public void intersect(Set<E> set) {
+        checkMutable();
+        if (set == this)
+            return;
+        SortedElements<E> sorted = sortedElements(set);
+        E[] other = sorted.elements;
+        int otherSize = sorted.size;
+
+        int kept = 0;
+        if (size <= otherSize) {
+            int j = 0;
+            for (int i = 0; i < size && j < otherSize; i++) {
+                j = gallop(other, j, otherSize, elements[i]);
+                if (j < otherSize && other[j].compareTo(elements[i]) == 0)
+                    elements[kept++] = elements[i];
+            }
+        } else {
+            int i = 0;
+            for (int j = 0; j < otherSize && i < size; j++) {
+                i = gallop(elements, i, size, other[j]);
+                if (i < size && elements[i].compareTo(other[j]) == 0)
+                    elements[kept++] = elements[i++];
+            }
+        }
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+    }
+
+    @Override
+    public void subtract(Set<E> set) {
+        checkMutable();
+        if (set == this) {
+            Arrays.fill(elements, 0, size, null);
+            size = 0;
+            return;
+        }
+        SortedElements<E> sorted = sortedElements(set);
+        E[] other = sorted.elements;
+        int otherSize = sorted.size;
+
+        int kept = 0;
+        if (size <= otherSize) {
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                j = gallop(other, j, otherSize, elements[i]);
+                if (j == otherSize || other[j].compareTo(elements[i]) != 0)
+                    elements[kept++] = elements[i];
+            }
+        } else {
+            // Copy the runs between the removed elements
+            int i = 0;
+            for (int j = 0; j < otherSize && i < size; j++) {
+                int pos = gallop(elements, i, size, other[j]);
+                System.arraycopy(elements, i, elements, kept, pos - i);
+                kept += pos - i;
+                i = pos;
+                if (i < size && elements[i].compareTo(other[j]) == 0)
+                    i++;
+            }
+            System.arraycopy(elements, i, elements, kept, size - i);
+            kept += size - i;
+        }
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(elements, size));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public E next() {
+                if (index >= size)
+                    throw new NoSuchElementException();
+                return elements[index++];
+            }
+        };
+    }
+}
@@ -1,5 +1,5 @@
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Optional;
 
 public class ListSet<E extends Comparable<E>> implements Set<E>, Iterable<E> {
 
@@ -134,75 +134,107 @@ public class ListSet<E extends Comparable<E>> implements Set<E>, Iterable<E> {
         return head == null;
     }
 
-    private Optional<E> getOptional(Iterator<E> iterator) {
-        return iterator.hasNext() ? Optional.of(iterator.next()) : Optional.empty();
+    /**
+     * Returns the elements of the given set as a chain of nodes in ascending order. The nodes of a ListSet are used
+     * directly; any other set is copied and sorted first.
+     *
+     * @param set the given set
+     * @return the first node of the chain; null if the set is empty
+     */
+    private static <E extends Comparable<E>> SetNode<E> sortedNodes(Set<E> set) {
+        if (set instanceof ListSet)
+            return ((ListSet<E>) set).head;
+
+        ArrayList<E> elements = new ArrayList<>();
+        for (E element : set) {
+            elements.add(element);
+        }
+        elements.sort(null);
+        SetNode<E> first = null;
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            if (first == null || elements.get(i).compareTo(first.item) != 0)
+                first = new SetNode<>(elements.get(i), first);
+        }
+        return first;
     }
 
+    /**
+     * Merges the given set into this list in a single pass; the nodes of this list are kept and only the elements
+     * missing from it get new nodes.
+     */
     @Override
     public void union(Set<E> set) {
-        if (set.isEmpty())
-            return;
-
-        Iterator<E> thisIterator = this.iterator();
-        Iterator<E> otherIterator = set.iterator();
-
-        SetNode<E> dummyHead = new SetNode<>(null, null);
-        SetNode<E> curNode = dummyHead;
-
-        Optional<E> thisElement = getOptional(thisIterator);
-        Optional<E> otherElement = getOptional(otherIterator);
-
-        while (thisElement.isPresent() && otherElement.isPresent()) {
-            SetNode<E> nextNode;
-            int compare = otherElement.get().compareTo(thisElement.get());
-            if (compare == 0) {
-                otherElement = getOptional(otherIterator);
-            } else if (compare > 0) {
-                nextNode = new SetNode<>(otherElement.get());
-                curNode.next = nextNode;
-                curNode = nextNode;
-                otherElement = getOptional(otherIterator);
+        SetNode<E> other = sortedNodes(set);
+        SetNode<E> dummyHead = new SetNode<>(null, head);
+        SetNode<E> prev = dummyHead;
+        SetNode<E> current = head;
+
+        while (other != null) {
+            int compare = current == null ? -1 : other.item.compareTo(current.item);
+            if (compare < 0) {
+                prev.next = new SetNode<>(other.item, current);
+                prev = prev.next;
+                other = other.next;
             } else {
-                nextNode = new SetNode<>(thisElement.get());
-                curNode.next = nextNode;
-                curNode = nextNode;
-                thisElement = getOptional(thisIterator);
+                if (compare == 0)
+                    other = other.next;
+                prev = current;
+                current = current.next;
             }
         }
 
-        while (thisElement.isPresent()) {
-            curNode.next = new SetNode<>(thisElement.get());
-            curNode = curNode.next;
-            thisElement = getOptional(thisIterator);
-        }
-
-        while (otherElement.isPresent()) {
-            curNode.next = new SetNode<>(otherElement.get());
-            curNode = curNode.next;
-            otherElement = getOptional(otherIterator);
-        }
-
         this.head = dummyHead.next;
     }
 
+    /**
+     * Unlinks the elements missing from the given set in a single merge pass.
+     */
     @Override
     public void intersect(Set<E> set) {
-        Iterator<E> iter = this.iterator();
-        while (iter.hasNext()) {
-            E next = iter.next();
-            if (!set.contains(next)) {
-                remove(next); // Be careful: Only works, because remove does not change the pointer of next.
+        SetNode<E> other = sortedNodes(set);
+        SetNode<E> dummyHead = new SetNode<>(null, head);
+        SetNode<E> prev = dummyHead;
+        SetNode<E> current = head;
+
+        while (current != null) {
+            while (other != null && other.item.compareTo(current.item) < 0) {
+                other = other.next;
             }
+            if (other != null && other.item.compareTo(current.item) == 0)
+                prev = current;
+            else
+                prev.next = current.next;
+            current = current.next;
         }
+
+        this.head = dummyHead.next;
     }
 
+    /**
+     * Unlinks the elements contained in the given set in a single merge pass.
+     */
     @Override
     public void subtract(Set<E> set) {
-        Iterator<E> iter = set.iterator();
-        while (iter.hasNext()) {
-            E next = iter.next();
-            remove(next);
+        SetNode<E> other = sortedNodes(set);
+        SetNode<E> dummyHead = new SetNode<>(null, head);
+        SetNode<E> prev = dummyHead;
+        SetNode<E> current = head;
+
+        while (current != null && other != null) {
+            int compare = current.item.compareTo(other.item);
+            if (compare < 0) {
+                prev = current;
+                current = current.next;
+            } else {
+                if (compare == 0) {
+                    prev.next = current.next;
+                    current = current.next;
+                }
+                other = other.next;
+            }
         }
+
+        this.head = dummyHead.next;
     }
 
     /**
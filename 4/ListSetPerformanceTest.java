@@ -0,0 +1,166 @@
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class ListSetPerformanceTest {
+
+    /**
+     * Exposes a java.util.TreeSet as a Set, to fill ListSets quickly and to compare with.
+     */
+    private static class TreeSetAdapter<E extends Comparable<E>> implements Set<E> {
+
+        private final TreeSet<E> set = new TreeSet<>();
+
+        @Override
+        public boolean add(E element) {
+            return set.add(element);
+        }
+
+        @Override
+        public boolean remove(E element) {
+            return set.remove(element);
+        }
+
+        @Override
+        public boolean contains(E element) {
+            return set.contains(element);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return set.isEmpty();
+        }
+
+        @Override
+        public void union(Set<E> other) {
+            for (E element : other) {
+                set.add(element);
+            }
+        }
+
+        @Override
+        public void intersect(Set<E> other) {
+            set.removeIf(element -> !other.contains(element));
+        }
+
+        @Override
+        public void subtract(Set<E> other) {
+            for (E element : other) {
+                set.remove(element);
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return set.iterator();
+        }
+    }
+
+    private static TreeSetAdapter<Integer> randomSet(Random random, int size) {
+        TreeSetAdapter<Integer> set = new TreeSetAdapter<>();
+        while (set.set.size() < size) {
+            set.add(random.nextInt(size * 4));
+        }
+        return set;
+    }
+
+    private static ListSet<Integer> listSet(TreeSetAdapter<Integer> elements) {
+        ListSet<Integer> set = new ListSet<>();
+        set.union(elements);
+        return set;
+    }
+
+    private static ArraySet<Integer> arraySet(TreeSetAdapter<Integer> elements) {
+        ArraySet<Integer> set = new ArraySet<>();
+        set.union(elements);
+        return set;
+    }
+
+    private static TreeSetAdapter<Integer> treeSet(TreeSetAdapter<Integer> elements) {
+        TreeSetAdapter<Integer> set = new TreeSetAdapter<>();
+        set.set.addAll(elements.set);
+        return set;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+
+        for (int size = 100_000; size <= 1_000_000; size *= 10) {
+            TreeSetAdapter<Integer> first = randomSet(random, size);
+            TreeSetAdapter<Integer> second = randomSet(random, size);
+
+            for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+                System.out.printf("%d Elements, Round %d%n", size, round);
+                String[] operations = {"union", "intersect", "subtract"};
+                for (String operation : operations) {
+                    ListSet<Integer> listSet = listSet(first);
+                    ListSet<Integer> otherListSet = listSet(second);
+                    long time = -System.nanoTime();
+                    switch (operation) {
+                        case "union" -> listSet.union(otherListSet);
+                        case "intersect" -> listSet.intersect(otherListSet);
+                        default -> listSet.subtract(otherListSet);
+                    }
+                    time += System.nanoTime();
+                    System.out.printf("  ListSet %-9s: %d ms%n", operation, time / 1_000_000);
+
+                    ArraySet<Integer> arraySet = arraySet(first);
+                    ArraySet<Integer> otherArraySet = arraySet(second);
+                    time = -System.nanoTime();
+                    switch (operation) {
+                        case "union" -> arraySet.union(otherArraySet);
+                        case "intersect" -> arraySet.intersect(otherArraySet);
+                        default -> arraySet.subtract(otherArraySet);
+                    }
+                    time += System.nanoTime();
+                    System.out.printf("  ArraySet %-9s: %d ms%n", operation, time / 1_000_000);
+
+                    TreeSetAdapter<Integer> treeSet = treeSet(first);
+                    time = -System.nanoTime();
+                    switch (operation) {
+                        case "union" -> treeSet.union(second);
+                        case "intersect" -> treeSet.intersect(second);
+                        default -> treeSet.subtract(second);
+                    }
+                    time += System.nanoTime();
+                    System.out.printf("  TreeSet %-9s: %d ms%n", operation, time / 1_000_000);
+                }
+
+                // A small set against a large one, where galloping skips most of the large set
+                TreeSetAdapter<Integer> small = randomSet(random, 100);
+                ArraySet<Integer> arraySet = arraySet(first).freeze();
+                ArraySet<Integer> smallArraySet = arraySet(small);
+                long time = -System.nanoTime();
+                smallArraySet.intersect(arraySet);
+                time += System.nanoTime();
+                System.out.printf("  ArraySet intersect with 100 elements: %d us%n", time / 1_000);
+
+                TreeSetAdapter<Integer> smallTreeSet = treeSet(small);
+                TreeSetAdapter<Integer> treeSet = treeSet(first);
+                time = -System.nanoTime();
+                smallTreeSet.intersect(treeSet);
+                time += System.nanoTime();
+                System.out.printf("  TreeSet intersect with 100 elements: %d us%n", time / 1_000);
+
+                int found = 0;
+                time = -System.nanoTime();
+                for (int i = 0; i < size; i++) {
+                    if (arraySet.contains(i))
+                        found++;
+                }
+                time += System.nanoTime();
+                System.out.printf("  ArraySet %d contains: %d ms (%d found)%n", size, time / 1_000_000, found);
+
+                found = 0;
+                time = -System.nanoTime();
+                for (int i = 0; i < size; i++) {
+                    if (treeSet.contains(i))
+                        found++;
+                }
+                time += System.nanoTime();
+                System.out.printf("  TreeSet %d contains: %d ms (%d found)%n", size, time / 1_000_000, found);
+            }
+        }
+    }
+
+}
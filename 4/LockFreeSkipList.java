@@ -0,0 +1,183 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ * A lock-free skip list after Harris and Fraser. Every forward pointer is an AtomicMarkableReference; a node is
+ * removed logically by marking its forward pointers from the top level down, and unlinked physically by a CAS on the
+ * pointers of its predecessors, which every add and remove performs for the marked nodes it passes. A node belongs
+ * to the set once it is linked on level 0 and until its level 0 pointer is marked. contains never writes and never
+ * retries, so it is wait-free.
+ */
+public class LockFreeSkipList<E extends Comparable<E>> implements RandomSkipList<E> {
+
+    private static class SkipNode<E extends Comparable<E>> {
+
+        private final E element;
+        private final AtomicMarkableReference<SkipNode<E>>[] next;
+
+        @SuppressWarnings("unchecked")
+        SkipNode(E element, int height) {
+            this.element = element;
+            this.next = (AtomicMarkableReference<SkipNode<E>>[]) new AtomicMarkableReference[height];
+            for (int i = 0; i < height; i++) {
+                next[i] = new AtomicMarkableReference<>(null, false);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Node(");
+            if (element != null)
+                sb.append(element.toString());
+            sb.append(")");
+            return sb.toString();
+        }
+    }
+
+    private final SkipNode<E> head, tail;
+    private final int maxHeight;
+
+    public LockFreeSkipList(int maxHeight) {
+        this.maxHeight = maxHeight;
+        this.tail = new SkipNode<>(null, maxHeight + 1);
+        this.head = new SkipNode<>(null, maxHeight + 1);
+        for (int i = 0; i <= maxHeight; i++) {
+            head.next[i].set(tail, false);
+        }
+    }
+
+    /**
+     * Returns a random height in [0, maxHeight] that is i with probability 2^-(i + 1).
+     */
+    private int randomHeight() {
+        return Math.min(Long.numberOfTrailingZeros(ThreadLocalRandom.current().nextLong()), maxHeight);
+    }
+
+    private boolean before(SkipNode<E> node, E element) {
+        return node != tail && node.element.compareTo(element) < 0;
+    }
+
+    /**
+     * Stores the last node before the element and the node after it on every level in predecessors and successors,
+     * unlinking the marked nodes on the way. Starts over if an unlink fails because the predecessor changed.
+     *
+     * @return true if successors[0] holds the element
+     */
+    private boolean find(E element, SkipNode<E>[] predecessors, SkipNode<E>[] successors) {
+        boolean[] marked = {false};
+        retry:
+        while (true) {
+            SkipNode<E> predecessor = head;
+            SkipNode<E> current = null;
+            for (int i = maxHeight; i >= 0; i--) {
+                current = predecessor.next[i].getReference();
+                while (true) {
+                    SkipNode<E> successor = current.next[i].get(marked);
+                    while (marked[0]) {
+                        if (!predecessor.next[i].compareAndSet(current, successor, false, false))
+                            continue retry;
+                        current = successor;
+                        successor = current.next[i].get(marked);
+                    }
+                    if (!before(current, element))
+                        break;
+                    predecessor = current;
+                    current = successor;
+                }
+                predecessors[i] = predecessor;
+                successors[i] = current;
+            }
+            return current != tail && current.element.compareTo(element) == 0;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean add(E element) {
+        SkipNode<E>[] predecessors = (SkipNode<E>[]) new SkipNode[maxHeight + 1];
+        SkipNode<E>[] successors = (SkipNode<E>[]) new SkipNode[maxHeight + 1];
+        int newHeight = randomHeight();
+
+        while (true) {
+            if (find(element, predecessors, successors))
+                return false;
+
+            SkipNode<E> newNode = new SkipNode<>(element, newHeight + 1);
+            for (int i = 0; i <= newHeight; i++) {
+                newNode.next[i].set(successors[i], false);
+            }
+            // Linking level 0 adds the element to the set
+            if (!predecessors[0].next[0].compareAndSet(successors[0], newNode, false, false))
+                continue;
+
+            for (int i = 1; i <= newHeight; i++) {
+                while (true) {
+                    SkipNode<E> successor = successors[i];
+                    SkipNode<E> expected = newNode.next[i].getReference();
+                    // A concurrent remove has marked the new node, which need not be linked any further
+                    if (expected != successor && !newNode.next[i].compareAndSet(expected, successor, false, false))
+                        return true;
+                    if (predecessors[i].next[i].compareAndSet(successor, newNode, false, false))
+                        break;
+                    find(element, predecessors, successors);
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(E element) {
+        SkipNode<E>[] predecessors = (SkipNode<E>[]) new SkipNode[maxHeight + 1];
+        SkipNode<E>[] successors = (SkipNode<E>[]) new SkipNode[maxHeight + 1];
+        if (!find(element, predecessors, successors))
+            return false;
+
+        SkipNode<E> victim = successors[0];
+        boolean[] marked = {false};
+        for (int i = victim.next.length - 1; i >= 1; i--) {
+            SkipNode<E> successor = victim.next[i].get(marked);
+            while (!marked[0]) {
+                victim.next[i].compareAndSet(successor, successor, false, true);
+                successor = victim.next[i].get(marked);
+            }
+        }
+
+        // Marking level 0 removes the element from the set; only one of several concurrent removes succeeds
+        SkipNode<E> successor = victim.next[0].get(marked);
+        while (true) {
+            boolean markedByThis = victim.next[0].compareAndSet(successor, successor, false, true);
+            successor = victim.next[0].get(marked);
+            if (markedByThis) {
+                find(element, predecessors, successors);
+                return true;
+            } else if (marked[0]) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(E element) {
+        boolean[] marked = {false};
+        SkipNode<E> predecessor = head;
+        SkipNode<E> current = null;
+        for (int i = maxHeight; i >= 0; i--) {
+            current = predecessor.next[i].getReference();
+            while (true) {
+                SkipNode<E> successor = current.next[i].get(marked);
+                while (marked[0]) {
+                    current = successor;
+                    successor = current.next[i].get(marked);
+                }
+                if (!before(current, element))
+                    break;
+                predecessor = current;
+                current = successor;
+            }
+        }
+        return current != tail && current.element.compareTo(element) == 0;
+    }
+
+}
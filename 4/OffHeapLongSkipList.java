@@ -0,0 +1,223 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A skip list of long keys, like RandomSkipListImpl, whose nodes live outside the heap in an arena of direct
+ * ByteBuffers, so even 50M keys are only a handful of objects for the garbage collector.
+ * <p>
+ * A node of height h takes 3 + h words of 4 bytes: the key (two words), the height and the offsets of its h
+ * successors, or NIL for the end of a level. Nodes are addressed by their word offset in the arena; the arena consists
+ * of chunks of CHUNK_WORDS words, and no node crosses a chunk boundary. Removed nodes are kept in one free list per
+ * height, linked through their first successor, and reused by the next node of the same height.
+ */
+public class OffHeapLongSkipList {
+
+    /**
+     * A chunk has 2^CHUNK_BITS words (64 MiB). Word offsets are non-negative ints, so the arena has at most
+     * MAX_CHUNKS chunks (8 GiB).
+     */
+    static final int CHUNK_BITS = 24;
+    static final int CHUNK_WORDS = 1 << CHUNK_BITS;
+    static final int MAX_CHUNKS = 1 << (31 - CHUNK_BITS);
+
+    private static final int NIL = -1;
+    private static final int KEY = 0;
+    private static final int HEIGHT = 2;
+    private static final int NEXT = 3;
+
+    private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+    // The first unused word of the last chunk, and the end of that chunk
+    private long top = 0;
+    private long end = 0;
+    // freeLists[h] is the first free node with h levels
+    private final int[] freeLists;
+
+    private final int head;
+    private int height, maxHeight;
+    private int size = 0;
+    private final int[] predecessors;
+
+    public OffHeapLongSkipList(int maxHeight) {
+        this.maxHeight = maxHeight;
+        this.height = 0;
+        this.freeLists = new int[maxHeight + 2];
+        Arrays.fill(freeLists, NIL);
+        this.predecessors = new int[maxHeight + 1];
+        this.head = allocate(maxHeight + 1);
+        for (int i = 0; i <= maxHeight; i++) {
+            setNext(head, i, NIL);
+        }
+    }
+
+    private ByteBuffer chunk(int node) {
+        return chunks.get(node >>> CHUNK_BITS);
+    }
+
+    private static int byteOffset(int word) {
+        return (word & (CHUNK_WORDS - 1)) << 2;
+    }
+
+    private long key(int node) {
+        return chunk(node).getLong(byteOffset(node + KEY));
+    }
+
+    private int height(int node) {
+        return chunk(node).getInt(byteOffset(node + HEIGHT));
+    }
+
+    private int next(int node, int level) {
+        return chunk(node).getInt(byteOffset(node + NEXT + level));
+    }
+
+    private void setNext(int node, int level, int next) {
+        chunk(node).putInt(byteOffset(node + NEXT + level), next);
+    }
+
+    /**
+     * Returns a node with the given number of levels, from the free list or from the end of the arena.
+     */
+    private int allocate(int levels) {
+        int node = freeLists[levels];
+        if (node != NIL) {
+            freeLists[levels] = next(node, 0);
+            return node;
+        }
+
+        int words = NEXT + levels;
+        if (top + words > end) {
+            if (chunks.size() == MAX_CHUNKS)
+                throw new IllegalStateException("arena full");
+            top = (long) chunks.size() << CHUNK_BITS;
+            end = top + CHUNK_WORDS;
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_WORDS << 2).order(ByteOrder.nativeOrder()));
+        }
+        node = (int) top;
+        top += words;
+        chunk(node).putInt(byteOffset(node + HEIGHT), levels);
+        return node;
+    }
+
+    private void free(int node) {
+        int levels = height(node);
+        setNext(node, 0, freeLists[levels]);
+        freeLists[levels] = node;
+    }
+
+    /**
+     * Finds the first node whose key is not smaller than the given key, or NIL, and stores its predecessors on levels
+     * 0 to height in the predecessors array.
+     */
+    private int findCandidate(long key) {
+        int current = head;
+
+        for (int i = height; i >= 0; i--) {
+            int next = next(current, i);
+            while (next != NIL && key(next) < key) {
+                current = next;
+                next = next(current, i);
+            }
+            predecessors[i] = current;
+        }
+        return next(current, 0);
+    }
+
+    /**
+     * Returns a random height in [0, maxHeight] that is i with probability 2^-(i + 1).
+     */
+    private int randomHeight() {
+        return Math.min(Long.numberOfTrailingZeros(ThreadLocalRandom.current().nextLong()), maxHeight);
+    }
+
+    /**
+     * Inserts a key into the skip list.
+     *
+     * @param key The key
+     * @return true if the key was inserted; false if it was already in the list
+     */
+    public boolean add(long key) {
+        int current = findCandidate(key);
+
+        if (current == NIL || key(current) != key) {
+            int newHeight = randomHeight();
+            if (newHeight > height) {
+                for (int i = height + 1; i <= newHeight; i++) {
+                    predecessors[i] = head;
+                }
+                height = newHeight;
+            }
+            int newNode = allocate(newHeight + 1);
+            chunk(newNode).putLong(byteOffset(newNode + KEY), key);
+            for (int i = 0; i <= newHeight; i++) {
+                setNext(newNode, i, next(predecessors[i], i));
+                setNext(predecessors[i], i, newNode);
+            }
+            size++;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Removes a key from the skip list; its node is reused by a later add.
+     *
+     * @param key The key
+     * @return true if the key was removed; false if it was not in the list
+     */
+    public boolean remove(long key) {
+        int current = findCandidate(key);
+
+        if (current != NIL && key(current) == key) {
+            int levels = height(current);
+            for (int i = 0; i < levels; i++) {
+                setNext(predecessors[i], i, next(current, i));
+            }
+            free(current);
+            size--;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the skip list contains the key.
+     *
+     * @param key The key
+     * @return true if the key is in the list
+     */
+    public boolean contains(long key) {
+        int current = head;
+        for (int i = height; i >= 0; i--) {
+            int next = next(current, i);
+            while (next != NIL && key(next) < key) {
+                current = next;
+                next = next(current, i);
+            }
+        }
+        current = next(current, 0);
+        return current != NIL && key(current) == key;
+    }
+
+    /**
+     * Returns the number of keys in the skip list.
+     *
+     * @return The number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes allocated outside the heap.
+     *
+     * @return The size of the arena in bytes
+     */
+    public long arenaBytes() {
+        return (long) chunks.size() * CHUNK_WORDS * 4;
+    }
+
+}
@@ -0,0 +1,87 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class OffHeapSkipListPerformanceTest {
+
+    private static final int MAX_HEIGHT = 24;
+
+    /**
+     * Returns the total time all garbage collectors have spent so far, in milliseconds.
+     */
+    private static long gcMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    /**
+     * Collects garbage and returns the used heap in bytes.
+     */
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        final int totalSearchOps = 1_000_000;
+        final long seed = 42;
+
+        long baseHeap = usedHeap();
+        long gc = -gcMillis();
+        long time = -System.currentTimeMillis();
+        RandomSkipListImpl<Long> heapList = new RandomSkipListImpl<>(MAX_HEIGHT);
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            heapList.add(random.nextLong());
+        }
+        time += System.currentTimeMillis();
+        gc += gcMillis();
+        System.out.println("RandomSkipListImpl Insertion Time: " + time + ", GC Time: " + gc);
+
+        random = new Random(seed);
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalSearchOps; i++) {
+            heapList.contains(random.nextLong());
+        }
+        time += System.currentTimeMillis();
+        System.out.println("RandomSkipListImpl Search: " + time);
+
+        gc = -gcMillis();
+        long heap = usedHeap() - baseHeap;
+        gc += gcMillis();
+        System.out.println("RandomSkipListImpl Heap: " + heap / (1 << 20) + " MiB, Full GC Time: " + gc);
+        heapList = null;
+
+        baseHeap = usedHeap();
+        gc = -gcMillis();
+        time = -System.currentTimeMillis();
+        OffHeapLongSkipList offHeapList = new OffHeapLongSkipList(MAX_HEIGHT);
+        random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            offHeapList.add(random.nextLong());
+        }
+        time += System.currentTimeMillis();
+        gc += gcMillis();
+        System.out.println("OffHeapLongSkipList Insertion Time: " + time + ", GC Time: " + gc);
+
+        random = new Random(seed);
+        time = -System.currentTimeMillis();
+        for (int i = 0; i < totalSearchOps; i++) {
+            offHeapList.contains(random.nextLong());
+        }
+        time += System.currentTimeMillis();
+        System.out.println("OffHeapLongSkipList Search: " + time);
+
+        gc = -gcMillis();
+        heap = usedHeap() - baseHeap;
+        gc += gcMillis();
+        System.out.println("OffHeapLongSkipList Heap: " + heap / (1 << 20) + " MiB, Arena: "
+                + offHeapList.arenaBytes() / (1 << 20) + " MiB, Full GC Time: " + gc);
+    }
+
+}
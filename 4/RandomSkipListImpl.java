@@ -1,128 +1,364 @@
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-
-public class RandomSkipListImpl<E extends Comparable<E>> implements RandomSkipList<E> {
-
-    private static class SkipNode<E extends Comparable<E>> {
-
-        private final E element;
-        private final ArrayList<SkipNode<E>> next;
-
-        SkipNode(E element, int height) {
-            this.element = element;
-            this.next = new ArrayList<>(height);
-        }
-
-        SkipNode(E element, int height, SkipNode<E> last) {
-            this(element, height);
-            for (int i = 0; i < height; i++) {
-                next.add(last);
-            }
-        }
-
-        SkipNode<E> getNext(int i) {
-            return next.get(i);
-        }
-
-        E getNextElement(int i) {
-            return next.get(i).element;
-        }
-
-        @Override
-        public String toString() {
-            StringBuilder sb = new StringBuilder("Node(");
-            if (element != null)
-                sb.append(element.toString());
-            sb.append(")");
-            return sb.toString();
-        }
-    }
-
-    private final SkipNode<E> head, tail;
-    private int height, maxHeight;
-
-    public RandomSkipListImpl(int maxHeight) {
-        this.maxHeight = maxHeight;
-        this.height = 0;
-        this.tail = new SkipNode<>(null, maxHeight + 1);
-        this.head = new SkipNode<>(null, maxHeight + 1, tail);
-    }
-
-    private SkipNode<E> findCandidate(E element, List<SkipNode<E>> trace) {
-        SkipNode<E> current = head;
-
-        for (int i = height; i >= 0; i--) {
-            while (current.getNext(i) != tail && current.getNextElement(i).compareTo(element) < 0) {
-                current = current.getNext(i);
-            }
-            trace.add(0, current);
-        }
-        return current.getNext(0);
-    }
-
-    private int randomHeight() {
-        double r = Math.random();
-        int i = 0;
-        while (i < maxHeight) {
-            if (r > 1 / Math.pow(2, i + 1)) {
-                return i;
-            }
-            i++;
-        }
-        return 0;
-    }
-
-    @Override
-    public boolean add(E element) {
-        List<SkipNode<E>> trace = new LinkedList<>();
-        SkipNode<E> current = findCandidate(element, trace);
-
-        if (current == tail || current.element.compareTo(element) != 0) {
-            int newHeight = randomHeight();
-            if (newHeight > height) {
-                for (int i = height + 1; i <= newHeight; i++) {
-                    trace.add(head);
-                }
-                height = newHeight;
-            }
-            SkipNode<E> newNode = new SkipNode<>(element, newHeight + 1, tail);
-            for (int i = 0; i <= newHeight; i++) {
-                newNode.next.set(i, trace.get(i).getNext(i));
-                trace.get(i).next.set(i, newNode);
-            }
-            return true;
-        } else {
-            return false;
-        }
-    }
-
-    @Override
-    public boolean remove(E element) {
-        List<SkipNode<E>> trace = new LinkedList<>();
-        SkipNode<E> current = findCandidate(element, trace);
-
-        if (current != tail && current.element.compareTo(element) == 0) {
-            for (int i = 0; i < current.next.size(); i++) {
-                trace.get(i).next.set(i, current.next.get(i));
-            }
-            return true;
-        } else {
-            return false;
-        }
-    }
-
-    @Override
-    public boolean contains(E element) {
-        SkipNode<E> current = head;
-        for (int i = height; i >= 0; i--) {
-            while (current.getNext(i) != tail && current.getNextElement(i).compareTo(element) < 0) {
-                current = current.getNext(i);
-            }
-        }
-        current = current.getNext(0);
-        return current.element.compareTo(element) == 0;
-    }
-
-
-}
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A skip list whose nodes hold their forward pointers in an array. The search for the predecessors of an element
+ * fills an array that is allocated once per list, so add and remove only allocate the new node, and contains does
+ * not allocate at all. The list is not thread safe.
+ * <p>
+ * Every forward pointer also stores its width, the number of level 0 steps it spans, so the k-th smallest element
+ * and the rank of an element are found in O(log n) like an element.
+ */
+public class RandomSkipListImpl<E extends Comparable<E>> implements RandomSkipList<E> {
+
+    private static class SkipNode<E extends Comparable<E>> {
+
+        private final E element;
+        private final SkipNode<E>[] next;
+        private final int[] width;
+
+        @SuppressWarnings("unchecked")
+        SkipNode(E element, int height) {
+            this.element = element;
+            this.next = (SkipNode<E>[]) new SkipNode[height];
+            this.width = new int[height];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Node(");
+            if (element != null)
+                sb.append(element.toString());
+            sb.append(")");
+            return sb.toString();
+        }
+    }
+
+    private final SkipNode<E> head, tail;
+    private int height, maxHeight;
+    private int size = 0;
+    // predecessors[i] is the last node on level i before the element searched last by findCandidate, and
+    // predecessorPositions[i] its position; the head is at position 0, the elements at 1 to size
+    private final SkipNode<E>[] predecessors;
+    private final int[] predecessorPositions;
+
+    @SuppressWarnings("unchecked")
+    public RandomSkipListImpl(int maxHeight) {
+        this.maxHeight = maxHeight;
+        this.height = 0;
+        this.tail = new SkipNode<>(null, 0);
+        this.head = new SkipNode<>(null, maxHeight + 1);
+        for (int i = 0; i <= maxHeight; i++) {
+            head.next[i] = tail;
+            head.width[i] = 1;
+        }
+        this.predecessors = (SkipNode<E>[]) new SkipNode[maxHeight + 1];
+        this.predecessorPositions = new int[maxHeight + 1];
+    }
+
+    /**
+     * Finds the first node whose element is not smaller than the given element, and stores its predecessors on
+     * levels 0 to height and their positions in the predecessors arrays.
+     */
+    private SkipNode<E> findCandidate(E element) {
+        SkipNode<E> current = head;
+        int position = 0;
+
+        for (int i = height; i >= 0; i--) {
+            SkipNode<E> next = current.next[i];
+            while (next != tail && next.element.compareTo(element) < 0) {
+                position += current.width[i];
+                current = next;
+                next = current.next[i];
+            }
+            predecessors[i] = current;
+            predecessorPositions[i] = position;
+        }
+        return current.next[0];
+    }
+
+    /**
+     * Returns a random height in [0, maxHeight] that is i with probability 2^-(i + 1): the number of trailing zero
+     * bits of a random long.
+     */
+    private int randomHeight() {
+        return Math.min(Long.numberOfTrailingZeros(ThreadLocalRandom.current().nextLong()), maxHeight);
+    }
+
+    @Override
+    public boolean add(E element) {
+        SkipNode<E> current = findCandidate(element);
+
+        if (current == tail || current.element.compareTo(element) != 0) {
+            insert(element);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Links a new node for the element behind the nodes in the predecessors array.
+     */
+    private void insert(E element) {
+        int newHeight = randomHeight();
+        if (newHeight > height) {
+            for (int i = height + 1; i <= newHeight; i++) {
+                predecessors[i] = head;
+                predecessorPositions[i] = 0;
+                head.width[i] = size + 1;
+            }
+            height = newHeight;
+        }
+        SkipNode<E> newNode = new SkipNode<>(element, newHeight + 1);
+        int position = predecessorPositions[0] + 1;
+        for (int i = 0; i <= newHeight; i++) {
+            SkipNode<E> predecessor = predecessors[i];
+            newNode.next[i] = predecessor.next[i];
+            predecessor.next[i] = newNode;
+            // The old successor moves from position predecessor + width to one behind
+            newNode.width[i] = predecessorPositions[i] + predecessor.width[i] + 1 - position;
+            predecessor.width[i] = position - predecessorPositions[i];
+        }
+        for (int i = newHeight + 1; i <= height; i++) {
+            predecessors[i].width[i]++;
+        }
+        size++;
+    }
+
+    /**
+     * Replaces the contents of this list with the given elements in O(n), linking every new node behind the last
+     * node of each of its levels, without any search. The new nodes hang off a temporary head until all elements
+     * have been read, so the list is unchanged if the elements turn out not to be sorted.
+     *
+     * @param sorted The elements in ascending order; duplicates are skipped
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public void bulkLoad(Iterator<? extends E> sorted) {
+        SkipNode<E> newHead = new SkipNode<>(null, maxHeight + 1);
+        int newHeight = 0;
+        int newSize = 0;
+        for (int i = 0; i <= maxHeight; i++) {
+            predecessors[i] = newHead;
+            predecessorPositions[i] = 0;
+        }
+
+        E last = null;
+        while (sorted.hasNext()) {
+            E element = sorted.next();
+            if (last != null) {
+                int compare = element.compareTo(last);
+                if (compare < 0)
+                    throw new IllegalArgumentException("elements not sorted: " + element + " after " + last);
+                if (compare == 0)
+                    continue;
+            }
+            last = element;
+
+            int nodeHeight = randomHeight();
+            newHeight = Math.max(newHeight, nodeHeight);
+            newSize++;
+            SkipNode<E> newNode = new SkipNode<>(element, nodeHeight + 1);
+            for (int i = 0; i <= nodeHeight; i++) {
+                predecessors[i].next[i] = newNode;
+                predecessors[i].width[i] = newSize - predecessorPositions[i];
+                predecessors[i] = newNode;
+                predecessorPositions[i] = newSize;
+            }
+        }
+
+        for (int i = 0; i <= maxHeight; i++) {
+            predecessors[i].next[i] = tail;
+            predecessors[i].width[i] = newSize + 1 - predecessorPositions[i];
+        }
+        System.arraycopy(newHead.next, 0, head.next, 0, maxHeight + 1);
+        System.arraycopy(newHead.width, 0, head.width, 0, maxHeight + 1);
+        height = newHeight;
+        size = newSize;
+    }
+
+    /**
+     * Adds the elements of a sorted batch in a single traversal. The predecessors of an element are kept for the
+     * next one: the search climbs from level 0 only as far as the successors on the way are smaller than the next
+     * element, and descends from there. A batch of m elements spread over n elements takes O(m log(n / m)). The order
+     * is checked in a first pass, so the list is unchanged if the batch is rejected.
+     *
+     * @param batch The elements in ascending order
+     * @return The number of elements added, i.e. not already in the list
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public int addAllSorted(Iterable<? extends E> batch) {
+        E last = null;
+        for (E element : batch) {
+            if (last != null && element.compareTo(last) < 0)
+                throw new IllegalArgumentException("elements not sorted: " + element + " after " + last);
+            last = element;
+        }
+
+        for (int i = 0; i <= height; i++) {
+            predecessors[i] = head;
+            predecessorPositions[i] = 0;
+        }
+
+        int added = 0;
+        for (E element : batch) {
+            // The successors of the predecessors are ordered by level, so the levels that need to move are 0 to top
+            int top = -1;
+            while (top < height) {
+                SkipNode<E> next = predecessors[top + 1].next[top + 1];
+                if (next == tail || next.element.compareTo(element) >= 0)
+                    break;
+                top++;
+            }
+
+            SkipNode<E> current = top >= 0 ? predecessors[top] : head;
+            int position = top >= 0 ? predecessorPositions[top] : 0;
+            for (int i = top; i >= 0; i--) {
+                if (predecessorPositions[i] > position) {
+                    current = predecessors[i];
+                    position = predecessorPositions[i];
+                }
+                SkipNode<E> next = current.next[i];
+                while (next != tail && next.element.compareTo(element) < 0) {
+                    position += current.width[i];
+                    current = next;
+                    next = current.next[i];
+                }
+                predecessors[i] = current;
+                predecessorPositions[i] = position;
+            }
+
+            SkipNode<E> candidate = predecessors[0].next[0];
+            if (candidate == tail || candidate.element.compareTo(element) != 0) {
+                insert(element);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean remove(E element) {
+        SkipNode<E> current = findCandidate(element);
+
+        if (current != tail && current.element.compareTo(element) == 0) {
+            for (int i = 0; i < current.next.length; i++) {
+                predecessors[i].next[i] = current.next[i];
+                predecessors[i].width[i] += current.width[i] - 1;
+            }
+            for (int i = current.next.length; i <= height; i++) {
+                predecessors[i].width[i]--;
+            }
+            size--;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean contains(E element) {
+        SkipNode<E> current = head;
+        for (int i = height; i >= 0; i--) {
+            SkipNode<E> next = current.next[i];
+            while (next != tail && next.element.compareTo(element) < 0) {
+                current = next;
+                next = current.next[i];
+            }
+        }
+        current = current.next[0];
+        return current != tail && current.element.compareTo(element) == 0;
+    }
+
+    /**
+     * Returns the number of elements in this list.
+     *
+     * @return The number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the element at the given index, i.e. the (index + 1)-th smallest element, in O(log n).
+     *
+     * @param index The index, starting at 0
+     * @return The element
+     * @throws IndexOutOfBoundsException if the index is negative or not smaller than size()
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        SkipNode<E> current = head;
+        int position = 0;
+        for (int i = height; i >= 0; i--) {
+            while (position + current.width[i] <= index + 1) {
+                position += current.width[i];
+                current = current.next[i];
+            }
+        }
+        return current.element;
+    }
+
+    /**
+     * Returns the number of elements smaller than the given element in O(log n); this is the index of the element if
+     * it is in the list.
+     *
+     * @param element The element
+     * @return The number of smaller elements
+     */
+    public int rank(E element) {
+        SkipNode<E> current = head;
+        int position = 0;
+        for (int i = height; i >= 0; i--) {
+            SkipNode<E> next = current.next[i];
+            while (next != tail && next.element.compareTo(element) < 0) {
+                position += current.width[i];
+                current = next;
+                next = current.next[i];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Returns an iterator over the elements in [lo, hi) in ascending order. The first element is found by one descent;
+     * the iterator then walks level 0. The list must not be modified while the iterator is used.
+     *
+     * @param lo The smallest element to return (inclusive)
+     * @param hi The end of the range (exclusive)
+     * @return The iterator
+     */
+    public Iterator<E> range(E lo, E hi) {
+        SkipNode<E> current = head;
+        for (int i = height; i >= 0; i--) {
+            SkipNode<E> next = current.next[i];
+            while (next != tail && next.element.compareTo(lo) < 0) {
+                current = next;
+                next = current.next[i];
+            }
+        }
+        SkipNode<E> first = current.next[0];
+
+        return new Iterator<E>() {
+            SkipNode<E> node = first;
+
+            @Override
+            public boolean hasNext() {
+                return node != tail && node.element.compareTo(hi) < 0;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                E element = node.element;
+                node = node.next[0];
+                return element;
+            }
+        };
+    }
+
+
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RandomSkipListPerformanceTest {
+
+    private static final int MAX_HEIGHT = 24;
+
+    /**
+     * Returns a list with the keys 0 to 99.
+     */
+    private static RandomSkipListImpl<Integer> hundredKeys() {
+        RandomSkipListImpl<Integer> list = new RandomSkipListImpl<>(MAX_HEIGHT);
+        for (int key = 0; key < 100; key++) {
+            list.add(key);
+        }
+        return list;
+    }
+
+    /**
+     * Checks that the list still holds exactly the keys 0 to 99 and accepts new keys.
+     */
+    private static void checkHundredKeys(RandomSkipListImpl<Integer> list, String operation) {
+        if (list.size() != 100)
+            throw new IllegalStateException("size() is " + list.size() + " after a rejected " + operation);
+        for (int key = 0; key < 100; key++) {
+            if (!list.contains(key) || list.get(key) != key || list.rank(key) != key)
+                throw new IllegalStateException("key " + key + " is wrong after a rejected " + operation);
+        }
+        if (list.contains(100) || !list.add(100) || list.size() != 101)
+            throw new IllegalStateException("add is wrong after a rejected " + operation);
+    }
+
+    /**
+     * Checks that bulkLoad and addAllSorted reject unsorted elements without changing the list.
+     */
+    private static void rejectedBatches() {
+        List<Integer> unsorted = List.of(1, 2, 3, 5, 4, 6);
+
+        RandomSkipListImpl<Integer> list = hundredKeys();
+        try {
+            list.bulkLoad(unsorted.iterator());
+            throw new IllegalStateException("bulkLoad accepted unsorted elements");
+        } catch (IllegalArgumentException expected) {
+            // the list must be unchanged
+        }
+        checkHundredKeys(list, "bulk load");
+
+        list = hundredKeys();
+        try {
+            list.addAllSorted(List.of(100, 101, 102, 50, 103));
+            throw new IllegalStateException("addAllSorted accepted unsorted elements");
+        } catch (IllegalArgumentException expected) {
+            // the list must be unchanged
+        }
+        checkHundredKeys(list, "sorted batch");
+    }
+
+    public static void main(String[] args) {
+        rejectedBatches();
+        System.out.println("Rejected Batches: ok");
+
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int batchSize = size / 100;
+        Random random = new Random(42);
+        List<Integer> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(2 * i);
+        }
+        List<Integer> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(2 * random.nextInt(size) + 1);
+        }
+        batch.sort(null);
+        System.out.printf("%d Elements, Batches of %d%n", size, batchSize);
+
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            System.out.printf("Round %d%n", round);
+
+            RandomSkipListImpl<Integer> list = new RandomSkipListImpl<>(MAX_HEIGHT);
+            long time = -System.currentTimeMillis();
+            for (Integer element : sorted) {
+                list.add(element);
+            }
+            time += System.currentTimeMillis();
+            System.out.printf("  Add Sorted     : %d ms%n", time);
+
+            list = new RandomSkipListImpl<>(MAX_HEIGHT);
+            time = -System.currentTimeMillis();
+            list.bulkLoad(sorted.iterator());
+            time += System.currentTimeMillis();
+            System.out.printf("  Bulk Load      : %d ms%n", time);
+
+            time = -System.currentTimeMillis();
+            for (Integer element : batch) {
+                list.add(element);
+            }
+            time += System.currentTimeMillis();
+            System.out.printf("  Add Batch      : %d ms%n", time);
+
+            list.bulkLoad(sorted.iterator());
+            time = -System.currentTimeMillis();
+            list.addAllSorted(batch);
+            time += System.currentTimeMillis();
+            System.out.printf("  Add All Sorted : %d ms%n", time);
+        }
+    }
+
+}
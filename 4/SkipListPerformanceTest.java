@@ -0,0 +1,164 @@
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class SkipListPerformanceTest {
+
+    private static final int MAX_HEIGHT = 20;
+    private static final int KEY_RANGE = 1 << 16;
+    private static final long DURATION_MILLIS = 1_000;
+
+    /**
+     * Guards a RandomSkipListImpl with a single lock.
+     */
+    private static class SynchronizedSkipList<E extends Comparable<E>> implements RandomSkipList<E> {
+
+        private final RandomSkipListImpl<E> list = new RandomSkipListImpl<>(MAX_HEIGHT);
+
+        @Override
+        public synchronized boolean add(E element) {
+            return list.add(element);
+        }
+
+        @Override
+        public synchronized boolean remove(E element) {
+            return list.remove(element);
+        }
+
+        @Override
+        public synchronized boolean contains(E element) {
+            return list.contains(element);
+        }
+    }
+
+    private static class ConcurrentSkipListAdapter<E extends Comparable<E>> implements RandomSkipList<E> {
+
+        private final ConcurrentSkipListSet<E> set = new ConcurrentSkipListSet<>();
+
+        @Override
+        public boolean add(E element) {
+            return set.add(element);
+        }
+
+        @Override
+        public boolean remove(E element) {
+            return set.remove(element);
+        }
+
+        @Override
+        public boolean contains(E element) {
+            return set.contains(element);
+        }
+    }
+
+    /**
+     * Lets every thread add and remove random keys of its own residue class while looking up all keys, and checks
+     * that the list holds exactly the keys each thread has added last. Neighbouring keys belong to different threads,
+     * so the threads constantly modify the same predecessors.
+     */
+    private static void stress(RandomSkipList<Integer> list, int threads) throws InterruptedException {
+        boolean[][] expected = new boolean[threads][KEY_RANGE / threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                boolean[] own = expected[id];
+                for (int i = 0; i < 200_000; i++) {
+                    int slot = random.nextInt(own.length);
+                    int key = slot * threads + id;
+                    if (random.nextBoolean()) {
+                        if (list.add(key) == own[slot])
+                            throw new IllegalStateException("add(" + key + ") returned a wrong result");
+                        own[slot] = true;
+                    } else {
+                        if (list.remove(key) != own[slot])
+                            throw new IllegalStateException("remove(" + key + ") returned a wrong result");
+                        own[slot] = false;
+                    }
+                    list.contains(random.nextInt(KEY_RANGE));
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (int t = 0; t < threads; t++) {
+            for (int slot = 0; slot < expected[t].length; slot++) {
+                int key = slot * threads + t;
+                if (list.contains(key) != expected[t][slot])
+                    throw new IllegalStateException("contains(" + key + ") is wrong after the stress test");
+            }
+        }
+    }
+
+    /**
+     * Runs 80% contains, 10% add and 10% remove on a list prefilled with half of the keys and returns the number of
+     * operations per second.
+     */
+    private static long throughput(RandomSkipList<Integer> list, int threads) throws InterruptedException {
+        for (int key = 0; key < KEY_RANGE; key += 2) {
+            list.add(key);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (running.get()) {
+                    int key = random.nextInt(KEY_RANGE);
+                    int operation = random.nextInt(10);
+                    if (operation == 0)
+                        list.add(key);
+                    else if (operation == 1)
+                        list.remove(key);
+                    else
+                        list.contains(key);
+                    count++;
+                }
+                operations.add(count);
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        Thread.sleep(DURATION_MILLIS);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() * 1000 / DURATION_MILLIS;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String[] names = {"LockFreeSkipList", "Synchronized", "ConcurrentSkipListSet"};
+        @SuppressWarnings("unchecked")
+        Supplier<RandomSkipList<Integer>>[] factories = new Supplier[]{
+                () -> new LockFreeSkipList<Integer>(MAX_HEIGHT),
+                SynchronizedSkipList::new,
+                ConcurrentSkipListAdapter::new
+        };
+
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            stress(new LockFreeSkipList<>(MAX_HEIGHT), threads);
+        }
+        System.out.println("Stress Test: ok");
+
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            System.out.printf("%d Threads:%n", threads);
+            for (int i = 0; i < names.length; i++) {
+                System.out.printf("  %-22s: %d ops/s%n", names[i], throughput(factories[i].get(), threads));
+            }
+        }
+    }
+
+}